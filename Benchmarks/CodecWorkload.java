@@ -0,0 +1,75 @@
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+public class CodecWorkload implements benchmarks.Workload {
+
+    // iterates over all the postings lists of an index with cursors, the lists being encoded
+    // with a postings codec (codec=vbyte, codec=block) or kept as in-memory arrays (codec=arrays).
+    // The index is built from synthetic tweets, or from a data file (dataFile, e.g.
+    // Trec_microblog11.txt). The size of the encoded postings is printed by setup
+
+    private int terms;
+    // a cursor over the postings of a term ID
+    private IntFunction<PostingsCursor> cursors;
+
+    @Override
+    public void setup(Map<String, String> parameters) throws Exception {
+        String codecName = parameters.get("codec");
+        String dataFile = parameters.get("dataFile");
+        InvertedIndex index;
+        if (dataFile.isEmpty()) {
+            index = new SyntheticTweets(42, 20000).index(Integer.parseInt(parameters.get("tweets")), parameters.get("stopWordsFile"));
+        } else {
+            index = new Prepro2().buildIndex(parameters.get("stopWordsFile"), dataFile);
+        }
+        terms = index.getDictionary().size();
+        PostingsList[] lists = new PostingsList[terms];
+        long postings = 0;
+        for (int termId = 0; termId < terms; termId++) {
+            lists[termId] = index.getPostingsList(termId);
+            postings += lists[termId].size();
+        }
+
+        long bytes;
+        if (codecName.equals("arrays")) {
+            // docIds and term frequencies are 4 bytes each
+            bytes = postings * 8;
+            cursors = termId -> lists[termId].cursor();
+        } else {
+            PostingsCodec codec = PostingsCodec.forName(codecName);
+            if (codec == null) {
+                throw new IllegalArgumentException("Unknown postings codec " + codecName);
+            }
+            // encode every list into one buffer
+            byte[][] encoded = new byte[terms][];
+            int total = 0;
+            for (int termId = 0; termId < terms; termId++) {
+                encoded[termId] = codec.encode(lists[termId]);
+                total += encoded[termId].length;
+            }
+            ByteBuffer buffer = ByteBuffer.allocateDirect(total);
+            int[] offsets = new int[terms];
+            for (int termId = 0; termId < terms; termId++) {
+                offsets[termId] = buffer.position();
+                buffer.put(encoded[termId]);
+            }
+            bytes = total;
+            cursors = termId -> codec.cursor(buffer, offsets[termId], lists[termId].size());
+        }
+        System.out.println(String.format("%s: %d terms, %d postings, %d bytes (%.2f bytes/posting)",
+                codecName, terms, postings, bytes, (double) bytes / postings));
+    }
+
+    @Override
+    public Object run() {
+        long checksum = 0;
+        for (int termId = 0; termId < terms; termId++) {
+            PostingsCursor cursor = cursors.apply(termId);
+            for (int doc = cursor.nextDoc(); doc != PostingsCursor.NO_MORE_DOCS; doc = cursor.nextDoc()) {
+                checksum += doc + cursor.termFrequency();
+            }
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,54 @@
+import java.util.List;
+import java.util.Map;
+
+public class IndexWorkload implements benchmarks.Workload {
+
+    // fills an index with already tokenized synthetic tweets, a document at a time with
+    // IndexBuilder.addDocument (method=builder), or a word at a time with
+    // InvertedIndex.addDocument (method=addDocument)
+
+    private boolean builder;
+    private TermDictionary dictionary;
+    private String[] documentIDs;
+    private String[][] words;
+    private int[][] termIds;
+
+    @Override
+    public void setup(Map<String, String> parameters) {
+        builder = parameters.get("method").equals("builder");
+        int tweets = Integer.parseInt(parameters.get("tweets"));
+        dictionary = new TermDictionary();
+        documentIDs = new String[tweets];
+        words = new String[tweets][];
+        termIds = new int[tweets][];
+        List<String> lines = new SyntheticTweets(42, 20000).lines(tweets);
+        for (int d = 0; d < tweets; d++) {
+            String[] fields = lines.get(d).split("\t");
+            documentIDs[d] = fields[0];
+            words[d] = fields[1].toLowerCase().replaceAll("[^a-z ]", "").trim().split(" +");
+            termIds[d] = new int[words[d].length];
+            for (int i = 0; i < words[d].length; i++) {
+                termIds[d][i] = dictionary.addTerm(words[d][i]);
+            }
+        }
+    }
+
+    @Override
+    public Object run() {
+        if (builder) {
+            IndexBuilder indexBuilder = new IndexBuilder(dictionary);
+            for (int d = 0; d < termIds.length; d++) {
+                indexBuilder.addDocument(documentIDs[d], termIds[d], termIds[d].length);
+            }
+            return indexBuilder.build();
+        }
+        InvertedIndex index = new InvertedIndex(dictionary);
+        for (int d = 0; d < words.length; d++) {
+            for (String word : words[d]) {
+                index.addWord(word);
+                index.addDocument(word, documentIDs[d]);
+            }
+        }
+        return index;
+    }
+}
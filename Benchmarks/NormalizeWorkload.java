@@ -0,0 +1,26 @@
+import java.util.Map;
+
+public class NormalizeWorkload implements benchmarks.Workload {
+
+    // computes the document norms (and the largest normalized term frequencies of the terms)
+    // of an index of synthetic tweets
+
+    private InvertedIndex index;
+
+    @Override
+    public void setup(Map<String, String> parameters) {
+        TermDictionary dictionary = new TermDictionary();
+        IndexBuilder builder = new IndexBuilder(dictionary);
+        Prepro2 preprocessor = new Prepro2(dictionary);
+        for (String line : new SyntheticTweets(42, 20000).lines(Integer.parseInt(parameters.get("tweets")))) {
+            preprocessor.addLine(line, builder);
+        }
+        index = builder.build();
+    }
+
+    @Override
+    public Object run() {
+        index.computeDocumentNorms();
+        return index.getDocumentNorm(0);
+    }
+}
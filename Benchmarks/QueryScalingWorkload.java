@@ -0,0 +1,55 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+public class QueryScalingWorkload implements benchmarks.Workload {
+
+    // ranks a batch of queries in parallel (RetrieveRank.getRankedResults with an executor of
+    // `threads` platform threads, or virtual threads), exhaustively or with dynamic pruning.
+    // The batch is the topics repeated `repeat` times, on an index of synthetic tweets whose
+    // vocabulary has the words of the topics, or on the index of a data file (dataFile)
+
+    private RetrieveRank rank;
+    private ExecutorService executor;
+
+    @Override
+    public void setup(Map<String, String> parameters) throws Exception {
+        String stopWordsFile = parameters.get("stopWordsFile");
+        String topicsFile = parameters.get("topicsFile");
+        String dataFile = parameters.get("dataFile");
+        InvertedIndex index;
+        if (dataFile.isEmpty()) {
+            index = new SyntheticTweets(42, 20000, SyntheticTweets.topicWords(topicsFile))
+                    .index(Integer.parseInt(parameters.get("tweets")), stopWordsFile);
+        } else {
+            index = new Prepro2().buildIndex(stopWordsFile, dataFile);
+        }
+        index.computeDocumentNorms();
+
+        List<Query> topics = QueryParser.getQueries(topicsFile, index.getDictionary());
+        List<Query> queries = new ArrayList<>();
+        int repeat = Integer.parseInt(parameters.get("repeat"));
+        for (int r = 0; r < repeat; r++) {
+            queries.addAll(topics);
+        }
+        rank = new RetrieveRank(index, queries);
+        rank.setDynamicPruning(Boolean.parseBoolean(parameters.get("prune")));
+        executor = QueryExecutors.newExecutor(Integer.parseInt(parameters.get("threads")),
+                Boolean.parseBoolean(parameters.get("virtualThreads")));
+    }
+
+    @Override
+    public Object run() {
+        try {
+            return rank.getRankedResults(RetrieveRank.DEFAULT_TOP_K, executor);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void tearDown() {
+        executor.shutdown();
+    }
+}
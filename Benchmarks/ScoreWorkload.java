@@ -0,0 +1,55 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class ScoreWorkload implements benchmarks.Workload {
+
+    // ranks the topK documents of every query (RetrieveRank.getTopResults), exhaustively or with
+    // dynamic pruning, with a similarity (cosine, bm25 or dirichlet) on an index of synthetic tweets whose vocabulary has the words of the
+    // topics, or on the index of a data file (dataFile, e.g. Trec_microblog11.txt). The queries
+    // are the 49 topics (queries=topics) or 49 synthetic queries drawn as the words of the
+    // tweets (queries=synthetic)
+
+    private List<Query> queries;
+    private RetrieveRank rank;
+    private int topK;
+
+    @Override
+    public void setup(Map<String, String> parameters) throws Exception {
+        String stopWordsFile = parameters.get("stopWordsFile");
+        String topicsFile = parameters.get("topicsFile");
+        String dataFile = parameters.get("dataFile");
+        topK = Integer.parseInt(parameters.get("topK"));
+
+        SyntheticTweets generator = new SyntheticTweets(42, 20000, SyntheticTweets.topicWords(topicsFile));
+        InvertedIndex index;
+        if (dataFile.isEmpty()) {
+            index = generator.index(Integer.parseInt(parameters.get("tweets")), stopWordsFile);
+        } else {
+            index = new Prepro2().buildIndex(stopWordsFile, dataFile);
+        }
+        index.computeDocumentNorms();
+        index.setSimilarity(Similarity.forName(parameters.get("similarity")));
+
+        if (parameters.get("queries").equals("topics")) {
+            queries = QueryParser.getQueries(topicsFile, index.getDictionary());
+        } else {
+            StemCache stemCache = QueryParser.newStemCache(index.getDictionary());
+            queries = new ArrayList<>();
+            for (int i = 1; i <= 49; i++) {
+                queries.add(QueryParser.parseQuery("SQ" + i, generator.nextQuery(), stemCache));
+            }
+        }
+        rank = new RetrieveRank(index, queries);
+        rank.setDynamicPruning(Boolean.parseBoolean(parameters.get("prune")));
+    }
+
+    @Override
+    public Object run() {
+        long documents = 0;
+        for (Query query : queries) {
+            documents += rank.getTopResults(query, topK).size();
+        }
+        return documents;
+    }
+}
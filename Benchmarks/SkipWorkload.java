@@ -0,0 +1,111 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+public class SkipWorkload implements benchmarks.Workload {
+
+    // moves cursors to targets on the longest postings lists of an index, with advance() (skip
+    // data, method=advance) or with a linear scan (nextDoc until the target, method=scan), the
+    // lists being encoded with a postings codec or kept as in-memory arrays (codec=arrays).
+    // The targets are every stride-th docId of a list, so a larger stride skips more postings.
+    // The index is built from synthetic tweets, or from a data file (dataFile)
+
+    // lists shorter than this are left out, skipping only matters on long lists
+    private static final int MIN_LIST_SIZE = 256;
+
+    private boolean advance;
+    private int stride;
+    private List<PostingsList> lists;
+    // a cursor over the i-th list
+    private IntFunction<PostingsCursor> cursors;
+
+    @Override
+    public void setup(Map<String, String> parameters) throws Exception {
+        advance = parameters.get("method").equals("advance");
+        stride = Integer.parseInt(parameters.get("stride"));
+        String codecName = parameters.get("codec");
+        String dataFile = parameters.get("dataFile");
+        InvertedIndex index;
+        if (dataFile.isEmpty()) {
+            index = new SyntheticTweets(42, 20000).index(Integer.parseInt(parameters.get("tweets")), parameters.get("stopWordsFile"));
+        } else {
+            index = new Prepro2().buildIndex(parameters.get("stopWordsFile"), dataFile);
+        }
+        lists = new ArrayList<>();
+        for (int termId = 0; termId < index.getDictionary().size(); termId++) {
+            PostingsList list = index.getPostingsList(termId);
+            if (list.size() >= MIN_LIST_SIZE) {
+                lists.add(list);
+            }
+        }
+
+        if (codecName.equals("arrays")) {
+            cursors = i -> lists.get(i).cursor();
+        } else {
+            PostingsCodec codec = PostingsCodec.forName(codecName);
+            if (codec == null) {
+                throw new IllegalArgumentException("Unknown postings codec " + codecName);
+            }
+            byte[][] encoded = new byte[lists.size()][];
+            int total = 0;
+            for (int i = 0; i < lists.size(); i++) {
+                encoded[i] = codec.encode(lists.get(i));
+                total += encoded[i].length;
+            }
+            ByteBuffer buffer = ByteBuffer.allocateDirect(total);
+            int[] offsets = new int[lists.size()];
+            for (int i = 0; i < lists.size(); i++) {
+                offsets[i] = buffer.position();
+                buffer.put(encoded[i]);
+            }
+            cursors = i -> codec.cursor(buffer, offsets[i], lists.get(i).size());
+        }
+
+        // both methods must reach the same postings
+        if (scan() != skip()) {
+            throw new IllegalStateException(codecName + ": advance and scan disagree for stride " + stride);
+        }
+        long targets = 0;
+        for (PostingsList list : lists) {
+            targets += list.size() / stride;
+        }
+        System.out.println(lists.size() + " lists of at least " + MIN_LIST_SIZE + " postings, " + targets + " targets");
+    }
+
+    @Override
+    public Object run() {
+        return advance ? skip() : scan();
+    }
+
+    private long scan() {
+        long checksum = 0;
+        for (int i = 0; i < lists.size(); i++) {
+            PostingsList list = lists.get(i);
+            PostingsCursor cursor = cursors.apply(i);
+            for (int p = stride - 1; p < list.size(); p += stride) {
+                int target = list.getDocId(p);
+                int doc = cursor.docId();
+                while (doc < target) {
+                    doc = cursor.nextDoc();
+                }
+                checksum += doc + cursor.termFrequency();
+            }
+        }
+        return checksum;
+    }
+
+    private long skip() {
+        long checksum = 0;
+        for (int i = 0; i < lists.size(); i++) {
+            PostingsList list = lists.get(i);
+            PostingsCursor cursor = cursors.apply(i);
+            for (int p = stride - 1; p < list.size(); p += stride) {
+                int doc = cursor.advance(list.getDocId(p));
+                checksum += doc + cursor.termFrequency();
+            }
+        }
+        return checksum;
+    }
+}
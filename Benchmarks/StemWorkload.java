@@ -0,0 +1,45 @@
+import java.util.Map;
+import java.util.Random;
+
+public class StemWorkload implements benchmarks.Workload {
+
+    // stems synthetic words carrying the suffixes the Porter stemmer removes, with Stemmer.stem
+    // (stemmer=stemmer) or through a warm StemCache, the path of the tokenizers (stemmer=cache)
+
+    private static final String[] SUFFIXES = {"", "", "s", "es", "ed", "ing", "ly", "ation", "ness", "ful", "ational", "izer"};
+
+    private boolean cached;
+    private char[][] words;
+    private Stemmer stemmer;
+    private StemCache stemCache;
+
+    @Override
+    public void setup(Map<String, String> parameters) {
+        cached = parameters.get("stemmer").equals("cache");
+        SyntheticTweets tweets = new SyntheticTweets(42, 20000);
+        Random random = new Random(42);
+        words = new char[Integer.parseInt(parameters.get("words"))][];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = (tweets.nextWord() + SUFFIXES[random.nextInt(SUFFIXES.length)]).toCharArray();
+        }
+        stemmer = new Stemmer();
+        stemCache = new StemCache(new TermDictionary(), Prepro2.STEM_CACHE_SIZE, true);
+        for (char[] word : words) {
+            stemCache.lookup(word, word.length);
+        }
+    }
+
+    @Override
+    public Object run() {
+        int sum = 0;
+        for (char[] word : words) {
+            if (cached) {
+                sum += stemCache.lookup(word, word.length);
+            } else {
+                stemmer.stem(word, 0, word.length);
+                sum += stemmer.getResultLength();
+            }
+        }
+        return sum;
+    }
+}
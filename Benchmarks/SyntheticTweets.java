@@ -0,0 +1,148 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class SyntheticTweets {
+
+    // generates data lines shaped like the ones of Trec_microblog11.txt (tweet ID, tab, text):
+    // 5 to 20 words drawn from a vocabulary with a Zipf distribution (the frequency of the word
+    // of rank r is proportional to 1 / r), with some links, mentions, hashtags and numbers for
+    // the tokenizer to clean up. The tweet IDs increase, as in the collection.
+    // Seed words (e.g. the words of the topics) are given random ranks in the vocabulary, as
+    // many among the first 10 ranks as among the ranks 100 to 1000 (log uniform), so that real
+    // queries find postings of all lengths. The same seed gives the same tweets
+
+    private static final long FIRST_TWEET_ID = 28965792812892160L;
+
+    private Random random;
+    private String[] vocabulary;
+    // cumulative[r] = sum of the weights of the ranks 0 .. r
+    private double[] cumulative;
+    private long tweetId = FIRST_TWEET_ID;
+
+    public SyntheticTweets(long seed, int vocabularySize, List<String> seedWords) {
+        random = new Random(seed);
+        vocabulary = new String[Math.max(vocabularySize, seedWords.size())];
+        for (String word : seedWords) {
+            int rank = (int) Math.pow(vocabulary.length, random.nextDouble()) - 1;
+            while (vocabulary[rank] != null) {
+                rank = (rank + 1) % vocabulary.length;
+            }
+            vocabulary[rank] = word;
+        }
+        for (int rank = 0; rank < vocabulary.length; rank++) {
+            if (vocabulary[rank] == null) {
+                vocabulary[rank] = randomWord();
+            }
+        }
+        cumulative = new double[vocabulary.length];
+        double sum = 0;
+        for (int rank = 0; rank < vocabulary.length; rank++) {
+            sum += 1.0 / (rank + 1);
+            cumulative[rank] = sum;
+        }
+    }
+
+    public SyntheticTweets(long seed, int vocabularySize) {
+        this(seed, vocabularySize, new ArrayList<>());
+    }
+
+    private String randomWord() {
+        int length = 3 + random.nextInt(8);
+        char[] word = new char[length];
+        for (int i = 0; i < length; i++) {
+            word[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(word);
+    }
+
+    // a word of the vocabulary, drawn with the Zipf distribution
+    public String nextWord() {
+        double x = random.nextDouble() * cumulative[cumulative.length - 1];
+        int rank = Arrays.binarySearch(cumulative, x);
+        return vocabulary[rank >= 0 ? rank : Math.min(-rank - 1, vocabulary.length - 1)];
+    }
+
+    // the text of a tweet (without its ID)
+    public String nextText() {
+        StringBuilder text = new StringBuilder();
+        int words = 5 + random.nextInt(16);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            int noise = random.nextInt(40);
+            if (noise == 0) {
+                text.append("http://t.co/").append(randomWord());
+            } else if (noise == 1) {
+                text.append('@').append(nextWord());
+            } else if (noise == 2) {
+                text.append('#').append(nextWord());
+            } else if (noise == 3) {
+                text.append(random.nextInt(10000));
+            } else if (noise == 4) {
+                // capitalized, with punctuation
+                String word = nextWord();
+                text.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length()).append(',');
+            } else {
+                text.append(nextWord());
+            }
+        }
+        return text.toString();
+    }
+
+    // the next data line: tweet ID, tab, text
+    public String nextLine() {
+        tweetId += 1 + random.nextInt(100000);
+        return tweetId + "\t" + nextText();
+    }
+
+    public List<String> lines(int count) {
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            lines.add(nextLine());
+        }
+        return lines;
+    }
+
+    // an index of the next `count` tweets, preprocessed as the data file is (Prepro2.addLine)
+    public InvertedIndex index(int count, String stopWordsFile) throws IOException {
+        TermDictionary dictionary = new TermDictionary();
+        dictionary.loadStopWords(stopWordsFile, new Stemmer());
+        IndexBuilder builder = new IndexBuilder(dictionary);
+        Prepro2 preprocessor = new Prepro2(dictionary);
+        for (int i = 0; i < count; i++) {
+            preprocessor.addLine(nextLine(), builder);
+        }
+        return builder.build();
+    }
+
+    // a query of 2 to 4 words, drawn as the words of the tweets
+    public String nextQuery() {
+        StringBuilder query = new StringBuilder(nextWord());
+        int words = 2 + random.nextInt(3);
+        for (int i = 1; i < words; i++) {
+            query.append(' ').append(nextWord());
+        }
+        return query.toString();
+    }
+
+    // the words of the titles of a topics file (lowercase letters only), to seed the vocabulary
+    public static List<String> topicWords(String topicsFile) throws IOException {
+        List<String> words = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get(topicsFile))) {
+            if (line.contains("<title>")) {
+                for (String word : line.replaceAll("</?title>", " ").toLowerCase().split("[^a-z]+")) {
+                    if (!word.isEmpty() && !words.contains(word)) {
+                        words.add(word);
+                    }
+                }
+            }
+        }
+        return words;
+    }
+}
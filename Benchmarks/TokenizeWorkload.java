@@ -0,0 +1,63 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class TokenizeWorkload implements benchmarks.Workload {
+
+    // tokenizes and stems synthetic tweets into a new index, with the String tokenizer of
+    // Prepro2 (addLine, tokenizer=strings) or with the MappedTokenizer (tokenizer=mapped).
+    // With a data file (dataFile, e.g. Trec_microblog11.txt) its first lines are tokenized instead
+
+    private boolean mapped;
+    private Set<String> stopWords;
+    private List<String> lines;
+    private ByteBuffer data;
+
+    @Override
+    public void setup(Map<String, String> parameters) throws Exception {
+        mapped = parameters.get("tokenizer").equals("mapped");
+        TermDictionary dictionary = new TermDictionary();
+        dictionary.loadStopWords(parameters.get("stopWordsFile"), new Stemmer());
+        stopWords = dictionary.getStopWords();
+        int tweets = Integer.parseInt(parameters.get("tweets"));
+        String dataFile = parameters.get("dataFile");
+        if (dataFile.isEmpty()) {
+            lines = new SyntheticTweets(42, 20000).lines(tweets);
+        } else {
+            lines = new ArrayList<>(tweets);
+            try (BufferedReader reader = new BufferedReader(new FileReader(dataFile))) {
+                String line = reader.readLine();
+                while (line != null && lines.size() < tweets) {
+                    lines.add(line);
+                    line = reader.readLine();
+                }
+            }
+            if (lines.size() < tweets) {
+                throw new IllegalArgumentException(dataFile + " has only " + lines.size() + " lines, " + tweets + " needed");
+            }
+        }
+        byte[] bytes = (String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8);
+        data = ByteBuffer.allocateDirect(bytes.length);
+        data.put(bytes).flip();
+    }
+
+    @Override
+    public Object run() {
+        TermDictionary dictionary = new TermDictionary(stopWords);
+        IndexBuilder builder = new IndexBuilder(dictionary);
+        if (mapped) {
+            new MappedTokenizer(dictionary).tokenize(data.duplicate(), builder);
+        } else {
+            Prepro2 preprocessor = new Prepro2(dictionary);
+            for (String line : lines) {
+                preprocessor.addLine(line, builder);
+            }
+        }
+        return builder.build();
+    }
+}
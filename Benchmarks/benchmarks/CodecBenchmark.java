@@ -0,0 +1,54 @@
+package benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CodecBenchmark {
+
+    // decoding every postings list of an index with cursors, for every postings codec
+    // (see CodecWorkload), in milliseconds for the whole index
+
+    @Param({"arrays", "vbyte", "block"})
+    public String codec;
+
+    @Param("60000")
+    public int tweets;
+
+    // the data file to index instead of synthetic tweets (e.g. Trec_microblog11.txt)
+    @Param("")
+    public String dataFile;
+
+    @Param("StopWords.txt")
+    public String stopWordsFile;
+
+    private Workload workload;
+
+    @Setup
+    public void setup() throws Exception {
+        workload = Workload.load("CodecWorkload", Map.of("codec", codec, "tweets", Integer.toString(tweets),
+                "dataFile", dataFile, "stopWordsFile", stopWordsFile));
+    }
+
+    @Benchmark
+    public Object decode() {
+        return workload.run();
+    }
+}
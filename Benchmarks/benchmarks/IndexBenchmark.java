@@ -0,0 +1,45 @@
+package benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class IndexBenchmark {
+
+    // filling an index with tokenized synthetic tweets (see IndexWorkload), in tweets per second
+    private static final int TWEETS = 10000;
+
+    @Param({"builder", "addDocument"})
+    public String method;
+
+    private Workload workload;
+
+    @Setup
+    public void setup() throws Exception {
+        workload = Workload.load("IndexWorkload", Map.of("method", method, "tweets", Integer.toString(TWEETS)));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TWEETS)
+    public Object index() {
+        return workload.run();
+    }
+}
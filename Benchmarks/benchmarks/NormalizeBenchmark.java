@@ -0,0 +1,42 @@
+package benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class NormalizeBenchmark {
+
+    // InvertedIndex.computeDocumentNorms on an index of synthetic tweets, the size of the
+    // collection by default (see NormalizeWorkload), in milliseconds per index
+    @Param("60000")
+    public int tweets;
+
+    private Workload workload;
+
+    @Setup
+    public void setup() throws Exception {
+        workload = Workload.load("NormalizeWorkload", Map.of("tweets", Integer.toString(tweets)));
+    }
+
+    @Benchmark
+    public Object normalize() {
+        return workload.run();
+    }
+}
@@ -0,0 +1,75 @@
+package benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class QueryScalingBenchmark {
+
+    // batch scoring of the 49 topics repeated REPEAT times on 1 to 8 threads (see QueryScalingWorkload),
+    // in queries per second: the speedup is the ratio to the score of 1 thread
+    private static final int REPEAT = 20;
+    private static final int QUERIES = 49 * REPEAT;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"false", "true"})
+    public boolean prune;
+
+    @Param("false")
+    public boolean virtualThreads;
+
+    @Param("60000")
+    public int tweets;
+
+    // the data file to index instead of synthetic tweets (e.g. Trec_microblog11.txt)
+    @Param("")
+    public String dataFile;
+
+    @Param("StopWords.txt")
+    public String stopWordsFile;
+
+    @Param("topics_MB1-49.txt")
+    public String topicsFile;
+
+    private Workload workload;
+
+    @Setup
+    public void setup() throws Exception {
+        workload = Workload.load("QueryScalingWorkload", Map.of("threads", Integer.toString(threads),
+                "prune", Boolean.toString(prune), "virtualThreads", Boolean.toString(virtualThreads),
+                "repeat", Integer.toString(REPEAT), "tweets", Integer.toString(tweets), "dataFile", dataFile,
+                "stopWordsFile", stopWordsFile, "topicsFile", topicsFile));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        workload.tearDown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public Object rank() {
+        return workload.run();
+    }
+}
@@ -0,0 +1,67 @@
+package benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ScoreBenchmark {
+
+    // RetrieveRank.getTopResults of the 49 topics or of 49 synthetic queries (see ScoreWorkload),
+    // in microseconds for all the queries
+
+    @Param({"topics", "synthetic"})
+    public String queries;
+
+    @Param({"false", "true"})
+    public boolean prune;
+
+    @Param({"cosine", "bm25", "dirichlet"})
+    public String similarity;
+
+    @Param("1000")
+    public int topK;
+
+    @Param("60000")
+    public int tweets;
+
+    // the data file to index instead of synthetic tweets (e.g. Trec_microblog11.txt)
+    @Param("")
+    public String dataFile;
+
+    @Param("StopWords.txt")
+    public String stopWordsFile;
+
+    @Param("topics_MB1-49.txt")
+    public String topicsFile;
+
+    private Workload workload;
+
+    @Setup
+    public void setup() throws Exception {
+        workload = Workload.load("ScoreWorkload", Map.of("queries", queries, "prune", Boolean.toString(prune), "similarity", similarity,
+                "topK", Integer.toString(topK), "tweets", Integer.toString(tweets), "dataFile", dataFile,
+                "stopWordsFile", stopWordsFile, "topicsFile", topicsFile));
+    }
+
+    @Benchmark
+    public Object score() {
+        return workload.run();
+    }
+}
@@ -0,0 +1,60 @@
+package benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SkipBenchmark {
+
+    // advance() against a linear scan on the longest postings lists of an index (see SkipWorkload),
+    // in microseconds for all the targets of all the lists
+
+    @Param({"advance", "scan"})
+    public String method;
+
+    @Param({"arrays", "vbyte", "block"})
+    public String codec;
+
+    @Param({"1", "4", "16", "64", "256", "1024"})
+    public int stride;
+
+    @Param("60000")
+    public int tweets;
+
+    // the data file to index instead of synthetic tweets (e.g. Trec_microblog11.txt)
+    @Param("")
+    public String dataFile;
+
+    @Param("StopWords.txt")
+    public String stopWordsFile;
+
+    private Workload workload;
+
+    @Setup
+    public void setup() throws Exception {
+        workload = Workload.load("SkipWorkload", Map.of("method", method, "codec", codec, "stride", Integer.toString(stride),
+                "tweets", Integer.toString(tweets), "dataFile", dataFile, "stopWordsFile", stopWordsFile));
+    }
+
+    @Benchmark
+    public Object skip() {
+        return workload.run();
+    }
+}
@@ -0,0 +1,46 @@
+package benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class StemBenchmark {
+
+    // Stemmer.stem of synthetic words, and the StemCache in front of it (see StemWorkload),
+    // in words per second
+    private static final int WORDS = 10000;
+
+    @Param({"stemmer", "cache"})
+    public String stemmer;
+
+    private Workload workload;
+
+    @Setup
+    public void setup() throws Exception {
+        workload = Workload.load("StemWorkload", Map.of("stemmer", stemmer, "words", Integer.toString(WORDS)));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public Object stem() {
+        return workload.run();
+    }
+}
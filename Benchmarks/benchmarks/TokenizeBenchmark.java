@@ -0,0 +1,54 @@
+package benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TokenizeBenchmark {
+
+    // Prepro2 tokenization and stemming of synthetic tweets (or of the first tweets of a data file)
+    // into a new index (see TokenizeWorkload), in tweets per second
+    private static final int TWEETS = 10000;
+
+    @Param({"strings", "mapped"})
+    public String tokenizer;
+
+    // the data file to tokenize instead of synthetic tweets (e.g. Trec_microblog11.txt)
+    @Param("")
+    public String dataFile;
+
+    @Param("StopWords.txt")
+    public String stopWordsFile;
+
+    private Workload workload;
+
+    @Setup
+    public void setup() throws Exception {
+        workload = Workload.load("TokenizeWorkload", Map.of("tokenizer", tokenizer, "stopWordsFile", stopWordsFile,
+                "dataFile", dataFile, "tweets", Integer.toString(TWEETS)));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TWEETS)
+    public Object tokenize() {
+        return workload.run();
+    }
+}
@@ -0,0 +1,29 @@
+package benchmarks;
+
+import java.util.Map;
+
+public interface Workload {
+
+    // the code measured by a benchmark. JMH only accepts benchmarks in a named package, and the
+    // classes of the project are in the default package, which a named package can't import:
+    // the workloads are default package classes (Benchmarks/*.java) implementing this interface,
+    // the benchmarks load them by name. An operation is a whole batch (of tweets, words or
+    // queries), so the interface call doesn't weigh in the measures
+
+    // prepares the data of the workload, from the parameters of the benchmark
+    void setup(Map<String, String> parameters) throws Exception;
+
+    // runs one operation, the result is given to the blackhole
+    Object run();
+
+    // releases what setup acquired (threads), once the benchmark is done
+    default void tearDown() throws Exception {
+    }
+
+    // a new instance of the workload class of the given name, set up with the parameters
+    static Workload load(String className, Map<String, String> parameters) throws Exception {
+        Workload workload = (Workload) Class.forName(className).getDeclaredConstructor().newInstance();
+        workload.setup(parameters);
+        return workload;
+    }
+}
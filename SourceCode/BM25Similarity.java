@@ -0,0 +1,77 @@
+public class BM25Similarity implements Similarity {
+
+    // Okapi BM25: a posting weighs idf * (k1 + 1) * tf / (tf + K) with
+    // K = k1 * (1 - b + b * length / averageLength) and idf = ln(1 + (N - df + 0.5) / (df + 0.5)),
+    // times the frequency of the term in the query.
+    // The factor of a document is F = 1 / (1 + K), so that tf / (tf + K) = tf * F / (1 + (tf - 1) * F):
+    // a posting with tf = 1 (most postings of tweets) weighs W * F, W being the weight of the term
+
+    public static final double DEFAULT_K1 = 1.2;
+    public static final double DEFAULT_B = 0.75;
+
+    private final double k1;
+    private final double b;
+
+    public BM25Similarity() {
+        this(DEFAULT_K1, DEFAULT_B);
+    }
+
+    public BM25Similarity(double k1, double b) {
+        this.k1 = k1;
+        this.b = b;
+    }
+
+    @Override
+    public String getName() {
+        return "bm25";
+    }
+
+    @Override
+    public float[] documentFactors(float[] norms, DocTable docTable, double averageLength) {
+        float[] factors = new float[docTable.size()];
+        for (int d = 0; d < factors.length; d++) {
+            double lengthRatio = averageLength == 0 ? 1 : docTable.getLength(d) / averageLength;
+            factors[d] = (float) (1 / (1 + k1 * (1 - b + b * lengthRatio)));
+        }
+        return factors;
+    }
+
+    @Override
+    public double queryWeight(double queryFrequency, SearchableIndex index, String term) {
+        // every occurrence of the term is scored, which makes up the frequency in the query
+        return 1;
+    }
+
+    @Override
+    public boolean normalizesQuery() {
+        return false;
+    }
+
+    @Override
+    public TermScorer scorer(SearchableIndex index, String term, double queryWeight) {
+        int documentFrequency = index.getDocumentFrequency(term);
+        double idf = Math.log(1 + (index.getDocumentCount() - documentFrequency + 0.5) / (documentFrequency + 0.5));
+        // a term without postings scores nothing
+        double weight = documentFrequency == 0 ? 0 : queryWeight * idf * (k1 + 1);
+        return new TermScorer() {
+            @Override
+            public double score(int termFrequency, float factor) {
+                if (termFrequency == 1) {
+                    return weight * factor;
+                }
+                return weight * termFrequency * factor / (1 + (termFrequency - 1) * factor);
+            }
+
+            // tf / (tf + K) is below 1
+            @Override
+            public double maxScore() {
+                return weight;
+            }
+
+            @Override
+            public double blockMaxScore(PostingsCursor cursor) {
+                return weight;
+            }
+        };
+    }
+}
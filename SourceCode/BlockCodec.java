@@ -0,0 +1,288 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class BlockCodec implements PostingsCodec {
+
+    // block codec (patched frame of reference, as in PForDelta): postings are cut in blocks
+    // of BLOCK_SIZE, and in a block the docId gaps and the term frequencies (minus 1) are
+    // bit packed with the smallest width that fits most of the values. The values that don't
+    // fit are exceptions: their low bits are packed with the others and their high bits are
+    // stored after the packed values.
+    // Block layout:
+    //   varint gap from the last docId of the previous block to the last docId of this block
+    //   varint number of bytes of the block after this header
+    //   docId gaps (the first one is from the last docId of the previous block), packed
+    //   term frequencies - 1, packed
+    // Packed values: byte bit width, varint exception count, the low bits of the values
+    //   (little endian bit order), then per exception: byte index in the block, varint high bits
+    // The block header is the skip data of the postings: advance() skips the blocks ending
+    // before its target without decoding them.
+
+    public static final int ID = 2;
+    static final int BLOCK_SIZE = PostingsList.BLOCK_SIZE;
+
+    @Override
+    public int getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return "block";
+    }
+
+    @Override
+    public byte[] encode(PostingsList list) {
+        // packed values take at most 4 bytes each, plus 6 bytes per exception and the headers
+        byte[] buffer = new byte[64 + list.size() * 20];
+        byte[] body = new byte[BLOCK_SIZE * 20 + 16];
+        int[] values = new int[BLOCK_SIZE];
+        int length = 0;
+        int previousLast = 0;
+        for (int start = 0; start < list.size(); start += BLOCK_SIZE) {
+            int n = Math.min(BLOCK_SIZE, list.size() - start);
+            int previous = previousLast;
+            for (int i = 0; i < n; i++) {
+                values[i] = list.getDocId(start + i) - previous;
+                previous = list.getDocId(start + i);
+            }
+            int bodyLength = pack(values, n, body, 0);
+            for (int i = 0; i < n; i++) {
+                values[i] = list.getTermFrequency(start + i) - 1;
+            }
+            bodyLength = pack(values, n, body, bodyLength);
+
+            int last = list.getDocId(start + n - 1);
+            length = VByteCodec.writeVarInt(buffer, length, last - previousLast);
+            length = VByteCodec.writeVarInt(buffer, length, bodyLength);
+            System.arraycopy(body, 0, buffer, length, bodyLength);
+            length += bodyLength;
+            previousLast = last;
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+
+    // packs n values at position in the buffer, returns the position after them
+    private static int pack(int[] values, int n, byte[] buffer, int position) {
+        int bits = bestBitWidth(values, n);
+        long limit = 1L << bits;
+        int exceptions = 0;
+        for (int i = 0; i < n; i++) {
+            if ((values[i] & 0xFFFFFFFFL) >= limit) {
+                exceptions++;
+            }
+        }
+        buffer[position++] = (byte) bits;
+        position = VByteCodec.writeVarInt(buffer, position, exceptions);
+
+        long mask = limit - 1;
+        long accumulator = 0;
+        int accumulated = 0;
+        for (int i = 0; i < n; i++) {
+            accumulator |= (values[i] & mask) << accumulated;
+            accumulated += bits;
+            while (accumulated >= 8) {
+                buffer[position++] = (byte) accumulator;
+                accumulator >>>= 8;
+                accumulated -= 8;
+            }
+        }
+        if (accumulated > 0) {
+            buffer[position++] = (byte) accumulator;
+        }
+        for (int i = 0; i < n; i++) {
+            if ((values[i] & 0xFFFFFFFFL) >= limit) {
+                buffer[position++] = (byte) i;
+                position = VByteCodec.writeVarInt(buffer, position, (int) ((values[i] & 0xFFFFFFFFL) >>> bits));
+            }
+        }
+        return position;
+    }
+
+    // the bit width giving the smallest packed size, exceptions included
+    private static int bestBitWidth(int[] values, int n) {
+        int bestBits = 32;
+        long bestSize = Long.MAX_VALUE;
+        for (int bits = 0; bits <= 32; bits++) {
+            long limit = 1L << bits;
+            long size = (n * (long) bits + 7) / 8;
+            for (int i = 0; i < n && size < bestSize; i++) {
+                long value = values[i] & 0xFFFFFFFFL;
+                if (value >= limit) {
+                    size += 1 + VByteCodec.varIntLength((int) (value >>> bits));
+                }
+            }
+            if (size < bestSize) {
+                bestSize = size;
+                bestBits = bits;
+            }
+        }
+        return bestBits;
+    }
+
+    @Override
+    public PostingsCursor cursor(ByteBuffer buffer, int offset, int size, float[] blockMaxNormalizedFrequencies) {
+        return new Cursor(buffer, offset, size, blockMaxNormalizedFrequencies);
+    }
+
+    private static class Cursor implements PostingsCursor {
+
+        private ByteBuffer buffer;
+        private int position;
+        private int size;
+        private int read; // postings in the blocks decoded so far
+        private int lastDocId; // last docId of the decoded blocks
+
+        private int[] docIds;
+        private int[] termFrequencies;
+        private int blockSize;
+        private int index;
+        private float[] blockMaxNormalizedFrequencies;
+
+        Cursor(ByteBuffer buffer, int offset, int size, float[] blockMaxNormalizedFrequencies) {
+            this.buffer = buffer;
+            this.position = offset;
+            this.size = size;
+            this.blockMaxNormalizedFrequencies = blockMaxNormalizedFrequencies;
+            docIds = new int[Math.min(size, BLOCK_SIZE)];
+            termFrequencies = new int[Math.min(size, BLOCK_SIZE)];
+            index = -1;
+        }
+
+        @Override
+        public int nextDoc() {
+            index++;
+            if (index >= blockSize) {
+                if (read == size) {
+                    index = blockSize;
+                    return NO_MORE_DOCS;
+                }
+                decodeBlock();
+            }
+            return docIds[index];
+        }
+
+        // decodes the next block into docIds and termFrequencies
+        private void decodeBlock() {
+            int previousLast = lastDocId;
+            lastDocId += readVarInt();
+            readVarInt(); // block length, only needed to skip the block
+            blockSize = Math.min(BLOCK_SIZE, size - read);
+            unpack(docIds, blockSize);
+            unpack(termFrequencies, blockSize);
+            int docId = previousLast;
+            for (int i = 0; i < blockSize; i++) {
+                docId += docIds[i];
+                docIds[i] = docId;
+                termFrequencies[i]++;
+            }
+            read += blockSize;
+            index = 0;
+        }
+
+        private void unpack(int[] values, int n) {
+            int bits = buffer.get(position++);
+            int exceptions = readVarInt();
+            long mask = (1L << bits) - 1;
+            long accumulator = 0;
+            int accumulated = 0;
+            for (int i = 0; i < n; i++) {
+                while (accumulated < bits) {
+                    accumulator |= (buffer.get(position++) & 0xFFL) << accumulated;
+                    accumulated += 8;
+                }
+                values[i] = (int) (accumulator & mask);
+                accumulator >>>= bits;
+                accumulated -= bits;
+            }
+            for (int e = 0; e < exceptions; e++) {
+                int i = buffer.get(position++) & 0xFF;
+                values[i] |= readVarInt() << bits;
+            }
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+
+        @Override
+        public int advance(int target) {
+            int current = docId();
+            if (current >= target) {
+                return current;
+            }
+            if (blockSize == 0 || target > lastDocId) {
+                // skip the blocks ending before the target, then decode the block holding it
+                while (read < size) {
+                    int blockStart = position;
+                    int gap = readVarInt();
+                    int length = readVarInt();
+                    if (lastDocId + gap >= target) {
+                        position = blockStart;
+                        break;
+                    }
+                    lastDocId += gap;
+                    position += length;
+                    read += Math.min(BLOCK_SIZE, size - read);
+                }
+                if (read == size) {
+                    index = 0;
+                    blockSize = 0;
+                    return NO_MORE_DOCS;
+                }
+                decodeBlock();
+                if (docIds[0] >= target) {
+                    return docIds[0];
+                }
+            }
+            // the target is in the decoded block, search it from the current posting
+            if (index + 1 < blockSize && docIds[index + 1] >= target) {
+                index++;
+                return docIds[index];
+            }
+            int found = Arrays.binarySearch(docIds, Math.max(index, 0), blockSize, target);
+            index = found >= 0 ? found : -found - 1;
+            return docIds[index];
+        }
+
+        @Override
+        public int blockLastDocId() {
+            return index >= 0 && index < blockSize ? lastDocId : NO_MORE_DOCS;
+        }
+
+        @Override
+        public float blockMaxNormalizedFrequency() {
+            if (blockMaxNormalizedFrequencies == null || index < 0 || index >= blockSize) {
+                return Float.POSITIVE_INFINITY;
+            }
+            // the decoded block is the last one read
+            return blockMaxNormalizedFrequencies[(read - 1) / BLOCK_SIZE];
+        }
+
+        @Override
+        public int docId() {
+            if (index < 0) {
+                return -1;
+            }
+            return index < blockSize ? docIds[index] : NO_MORE_DOCS;
+        }
+
+        @Override
+        public int termFrequency() {
+            return termFrequencies[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+public class CosineSimilarity implements Similarity {
+
+    // the tf-idf cosine the queries were first ranked with: a document term weighs
+    // w_ij = tf_ij * idf_i over the norm sqrt(sum_i w_ij^2) of the document (rounded to a float,
+    // the precision the normalized weights were stored with), a query term
+    // (0.5 + 0.5 * tf_iq) * idf_i, and the query weights are normalized.
+    // The factor of a document is its norm
+
+    @Override
+    public String getName() {
+        return "cosine";
+    }
+
+    @Override
+    public float[] documentFactors(float[] norms, DocTable docTable, double averageLength) {
+        return norms;
+    }
+
+    @Override
+    public double queryWeight(double queryFrequency, SearchableIndex index, String term) {
+        // W_iq=(0.5+0.5*tf_word_in_query)*idf_word_in_corpus
+        return (0.5 + 0.5 * queryFrequency) * index.getTermIDF(term);
+    }
+
+    @Override
+    public boolean normalizesQuery() {
+        return true;
+    }
+
+    @Override
+    public TermScorer scorer(SearchableIndex index, String term, double queryWeight) {
+        double idf = index.getTermIDF(term);
+        float maxNormalizedFrequency = index.getMaxNormalizedFrequency(term);
+        return new TermScorer() {
+            @Override
+            public double score(int termFrequency, float norm) {
+                return queryWeight * (float) (idf * termFrequency / norm);
+            }
+
+            // the largest normalized term frequency tf / norm bounds the weights of the term
+            @Override
+            public double maxScore() {
+                return queryWeight * idf * maxNormalizedFrequency;
+            }
+
+            @Override
+            public double blockMaxScore(PostingsCursor cursor) {
+                return queryWeight * idf * cursor.blockMaxNormalizedFrequency();
+            }
+        };
+    }
+}
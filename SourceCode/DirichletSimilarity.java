@@ -0,0 +1,84 @@
+public class DirichletSimilarity implements Similarity {
+
+    // query likelihood with Dirichlet smoothing: a posting weighs
+    // ln(1 + tf / (mu * p)) + ln(mu / (length + mu)), times the frequency of the term in the
+    // query, p = cf / T being the probability of the term in the collection (cf occurrences of
+    // the term among the T tokens of the index). A weight below 0 counts as 0, so a document
+    // only gains from the query terms it holds.
+    // The factor of a document is ln(mu / (length + mu)), the first part only depends on tf and
+    // the term: the scorer of a term keeps it for the small term frequencies
+
+    public static final double DEFAULT_MU = 2000;
+
+    // term frequencies whose weight is computed by the scorer of a term in advance
+    private static final int PRECOMPUTED_FREQUENCIES = 32;
+
+    private final double mu;
+
+    public DirichletSimilarity() {
+        this(DEFAULT_MU);
+    }
+
+    public DirichletSimilarity(double mu) {
+        this.mu = mu;
+    }
+
+    @Override
+    public String getName() {
+        return "dirichlet";
+    }
+
+    @Override
+    public float[] documentFactors(float[] norms, DocTable docTable, double averageLength) {
+        float[] factors = new float[docTable.size()];
+        for (int d = 0; d < factors.length; d++) {
+            factors[d] = (float) Math.log(mu / (docTable.getLength(d) + mu));
+        }
+        return factors;
+    }
+
+    @Override
+    public double queryWeight(double queryFrequency, SearchableIndex index, String term) {
+        // every occurrence of the term is scored, which makes up the frequency in the query
+        return 1;
+    }
+
+    @Override
+    public boolean normalizesQuery() {
+        return false;
+    }
+
+    @Override
+    public TermScorer scorer(SearchableIndex index, String term, double queryWeight) {
+        long collectionFrequency = index.getCollectionFrequency(term);
+        long tokens = index.getTokenCount();
+        // mu * p, the pseudo count of the term in every document
+        double smoothing = mu * collectionFrequency / Math.max(1, tokens);
+        double[] weights = new double[PRECOMPUTED_FREQUENCIES];
+        if (collectionFrequency > 0) {
+            for (int tf = 1; tf < weights.length; tf++) {
+                weights[tf] = queryWeight * Math.log(1 + tf / smoothing);
+            }
+        }
+        // with tf <= length, the weight grows with tf up to ln(1 / p)
+        double maxScore = collectionFrequency == 0 ? 0 : queryWeight * Math.log((double) tokens / collectionFrequency);
+        return new TermScorer() {
+            @Override
+            public double score(int termFrequency, float factor) {
+                double weight = termFrequency < PRECOMPUTED_FREQUENCIES ? weights[termFrequency]
+                        : queryWeight * Math.log(1 + termFrequency / smoothing);
+                return Math.max(0, weight + queryWeight * factor);
+            }
+
+            @Override
+            public double maxScore() {
+                return maxScore;
+            }
+
+            @Override
+            public double blockMaxScore(PostingsCursor cursor) {
+                return maxScore;
+            }
+        };
+    }
+}
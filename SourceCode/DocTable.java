@@ -0,0 +1,72 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+public class DocTable {
+
+    // the doc table maps every document ID (the tweet ID) to a dense int (0, 1, 2, ...)
+    // in the order the documents were added, so postings can store plain ints,
+    // it also keeps the length (number of indexed tokens) of every document
+
+    // returned by getId when the document is not in the table
+    public static final int NOT_FOUND = -1;
+
+    private HashMap<String, Integer> ids;
+    private ArrayList<String> docIDs;
+    private int[] lengths;
+    // sum of the lengths
+    private long tokenCount;
+
+    public DocTable() {
+        ids = new HashMap<>();
+        docIDs = new ArrayList<>();
+        lengths = new int[16];
+    }
+
+    // returns the int ID of the document, adding it to the table if it is new
+    public int addDocument(String documentID) {
+        Integer id = ids.get(documentID);
+        if (id != null) {
+            return id;
+        }
+        int newId = docIDs.size();
+        ids.put(documentID, newId);
+        docIDs.add(documentID);
+        if (newId == lengths.length) {
+            lengths = Arrays.copyOf(lengths, newId * 2);
+        }
+        return newId;
+    }
+
+    // adds tokens to the length of the document
+    public void addToLength(int id, int tokens) {
+        lengths[id] += tokens;
+        tokenCount += tokens;
+    }
+
+    // returns the number of indexed tokens in the document
+    public int getLength(int id) {
+        return lengths[id];
+    }
+
+    // returns the number of indexed tokens in all the documents
+    public long getTokenCount() {
+        return tokenCount;
+    }
+
+    // returns the int ID of the document, or NOT_FOUND if it is not in the table
+    public int getId(String documentID) {
+        Integer id = ids.get(documentID);
+        return id == null ? NOT_FOUND : id;
+    }
+
+    // returns the original document ID for an int ID
+    public String getDocId(int id) {
+        return docIDs.get(id);
+    }
+
+    // number of documents in the table
+    public int size() {
+        return docIDs.size();
+    }
+}
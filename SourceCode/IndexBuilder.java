@@ -0,0 +1,71 @@
+import java.util.Arrays;
+
+public class IndexBuilder {
+
+    // the index builder fills an inverted index in a single pass, one document at a time:
+    // the term frequencies of a document are counted locally and its postings are appended
+    // to the index in bulk, so the corpus never has to be kept in memory
+
+    private InvertedIndex index;
+    private DocTable docTable;
+
+    // scratch space for the document being added
+    private int[] sortedTerms;
+    private int[] uniqueTerms;
+    private int[] termFrequencies;
+    // time spent adding the documents
+    private long nanos;
+
+    public IndexBuilder(TermDictionary dictionary) {
+        index = new InvertedIndex(dictionary);
+        docTable = index.getDocTable();
+        sortedTerms = new int[64];
+        uniqueTerms = new int[64];
+        termFrequencies = new int[64];
+    }
+
+    // adds a document given the term IDs of its tokens (with duplicates, in any order)
+    // documents without any token are not added, they are not part of the index
+    public void addDocument(String documentID, int[] termIds, int count) {
+        if (count == 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        if (count > sortedTerms.length) {
+            sortedTerms = new int[count];
+            uniqueTerms = new int[count];
+            termFrequencies = new int[count];
+        }
+        // sort the tokens so that the occurrences of a term are next to each other
+        System.arraycopy(termIds, 0, sortedTerms, 0, count);
+        Arrays.sort(sortedTerms, 0, count);
+
+        // count the term frequencies
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique > 0 && uniqueTerms[unique - 1] == sortedTerms[i]) {
+                termFrequencies[unique - 1]++;
+            } else {
+                uniqueTerms[unique] = sortedTerms[i];
+                termFrequencies[unique] = 1;
+                unique++;
+            }
+        }
+
+        int docId = docTable.addDocument(documentID);
+        docTable.addToLength(docId, count);
+        index.addPostings(docId, uniqueTerms, termFrequencies, unique);
+        nanos += System.nanoTime() - start;
+    }
+
+    // time spent adding documents to the index
+    public long getNanos() {
+        return nanos;
+    }
+
+    // returns the filled index, the unused capacity of the postings lists is released
+    public InvertedIndex build() {
+        index.trim();
+        return index;
+    }
+}
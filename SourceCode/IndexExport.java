@@ -0,0 +1,195 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+public class IndexExport {
+
+    // writes the terms of an index and their postings, one term (or posting) at a time, so the
+    // memory used doesn't grow with the index: the postings of an index opened from an index
+    // file are decoded while they are written. Terms are listed alphabetically, as in the
+    // vocabulary, and can be filtered by prefix and by document frequency. Formats:
+    //   text   the step2_inverted_index.txt dump: "word df -->  [docID, tf]  [docID, tf] ..."
+    //   tsv    a header line, then one line per posting: term, docID, tf (tab separated)
+    //   jsonl  one JSON object per term: {"term":"word","df":2,"postings":[["docID",tf],...]}
+    // Usage: IndexExport [--index=FILE] [--format=text|tsv|jsonl] [--prefix=P] [--min-df=N]
+    //                    [--max-df=N] [--out=FILE]
+    // without an index file, the index is built from ../Trec_microblog11.txt; without an output
+    // file, the terms are written to the standard output
+
+    public static final String TEXT = "text";
+    public static final String TSV = "tsv";
+    public static final String JSONL = "jsonl";
+
+    private String format = TEXT;
+    private String prefix = "";
+    private int minDocumentFrequency = 0;
+    private int maxDocumentFrequency = Integer.MAX_VALUE;
+
+    private long terms;
+    private long postings;
+
+    public static boolean isFormat(String format) {
+        return format.equals(TEXT) || format.equals(TSV) || format.equals(JSONL);
+    }
+
+    public void setFormat(String format) {
+        if (!isFormat(format)) {
+            throw new IllegalArgumentException("Unknown export format " + format);
+        }
+        this.format = format;
+    }
+
+    // only the terms starting with prefix are written
+    public void setPrefix(String prefix) {
+        this.prefix = prefix;
+    }
+
+    // only the terms whose document frequency is in [min, max] are written
+    public void setDocumentFrequencyRange(int min, int max) {
+        minDocumentFrequency = min;
+        maxDocumentFrequency = max;
+    }
+
+    // writes the terms of the index that pass the filters, returns the number of terms written
+    public long export(InvertedIndex index, Writer out) throws IOException {
+        long written = 0;
+        TermDictionary dictionary = index.getDictionary();
+        DocTable docTable = index.getDocTable();
+        if (format.equals(TEXT)) {
+            out.write("Word\tdocFreq --> [ DocId, termFreq ]\n");
+            out.write("-----------------------------------------------\n");
+        } else if (format.equals(TSV)) {
+            out.write("term\tdocID\ttf\n");
+        }
+        for (int termId : dictionary.getSortedTermIds()) {
+            String term = dictionary.getTerm(termId);
+            if (!term.startsWith(prefix)) {
+                continue;
+            }
+            // the document frequency is known without reading the postings
+            int documentFrequency = index.getDocumentFrequency(termId);
+            if (documentFrequency < minDocumentFrequency || documentFrequency > maxDocumentFrequency) {
+                continue;
+            }
+            PostingsCursor cursor = index.getPostingsCursor(termId);
+            if (format.equals(TEXT)) {
+                out.write(term);
+                out.write(' ');
+                out.write(Integer.toString(documentFrequency));
+                out.write(" --> ");
+                for (int doc = cursor.nextDoc(); doc != PostingsCursor.NO_MORE_DOCS; doc = cursor.nextDoc()) {
+                    out.write(" [");
+                    out.write(docTable.getDocId(doc));
+                    out.write(", ");
+                    out.write(Integer.toString(cursor.termFrequency()));
+                    out.write("] ");
+                }
+                out.write('\n');
+            } else if (format.equals(TSV)) {
+                for (int doc = cursor.nextDoc(); doc != PostingsCursor.NO_MORE_DOCS; doc = cursor.nextDoc()) {
+                    out.write(term);
+                    out.write('\t');
+                    out.write(docTable.getDocId(doc));
+                    out.write('\t');
+                    out.write(Integer.toString(cursor.termFrequency()));
+                    out.write('\n');
+                }
+            } else {
+                out.write("{\"term\":" + jsonString(term) + ",\"df\":" + documentFrequency + ",\"postings\":[");
+                String separator = "";
+                for (int doc = cursor.nextDoc(); doc != PostingsCursor.NO_MORE_DOCS; doc = cursor.nextDoc()) {
+                    out.write(separator);
+                    separator = ",";
+                    out.write("[" + jsonString(docTable.getDocId(doc)) + "," + cursor.termFrequency() + "]");
+                }
+                out.write("]}\n");
+            }
+            written++;
+            postings += documentFrequency;
+        }
+        terms += written;
+        return written;
+    }
+
+    // s as a JSON string literal
+    static String jsonString(String s) {
+        StringBuilder quoted = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    // number of terms and postings written by the exports
+    public long getTerms() {
+        return terms;
+    }
+
+    public long getPostings() {
+        return postings;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String indexFileName = null;
+        String outFileName = null;
+        IndexExport export = new IndexExport();
+        int minDocumentFrequency = 0;
+        int maxDocumentFrequency = Integer.MAX_VALUE;
+        for (String arg : args) {
+            if (arg.startsWith("--index=")) {
+                indexFileName = arg.substring("--index=".length());
+            } else if (arg.startsWith("--format=")) {
+                String format = arg.substring("--format=".length());
+                if (!isFormat(format)) {
+                    System.err.println("Unknown format " + format);
+                    return;
+                }
+                export.setFormat(format);
+            } else if (arg.startsWith("--prefix=")) {
+                export.setPrefix(arg.substring("--prefix=".length()));
+            } else if (arg.startsWith("--min-df=")) {
+                minDocumentFrequency = Integer.parseInt(arg.substring("--min-df=".length()));
+            } else if (arg.startsWith("--max-df=")) {
+                maxDocumentFrequency = Integer.parseInt(arg.substring("--max-df=".length()));
+            } else if (arg.startsWith("--out=")) {
+                outFileName = arg.substring("--out=".length());
+            }
+        }
+        export.setDocumentFrequencyRange(minDocumentFrequency, maxDocumentFrequency);
+
+        InvertedIndex index;
+        if (indexFileName != null) {
+            // the postings are decoded from the file as they are written, nothing is rebuilt
+            index = IndexFile.open(indexFileName);
+        } else {
+            index = new Prepro2().buildIndex("../StopWords.txt", "../Trec_microblog11.txt");
+        }
+        long start = System.nanoTime();
+        Writer out = outFileName != null
+                ? Files.newBufferedWriter(Paths.get(outFileName), Charset.defaultCharset())
+                : new BufferedWriter(new OutputStreamWriter(System.out, Charset.defaultCharset()), 1 << 16);
+        try {
+            export.export(index, out);
+        } finally {
+            if (outFileName != null) {
+                out.close();
+            } else {
+                out.flush();
+            }
+        }
+        // the report goes to the standard error, the standard output may be the export
+        System.err.println(String.format("Exported %d terms (%d postings) in %.1f ms",
+                export.getTerms(), export.getPostings(), (System.nanoTime() - start) / 1e6));
+    }
+}
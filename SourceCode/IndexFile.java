@@ -0,0 +1,204 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+public class IndexFile {
+
+    // an index file stores an inverted index and its document norms, so that queries can be run
+    // without preprocessing the data again. Layout (numbers are big endian):
+    //   header: int magic ("MBIX"), int version, int codec ID, long offset of the dictionary section
+    //   postings section: the postings of every term, in term ID order, encoded by the codec
+    //   dictionary section:
+    //     int stop word count, then the stop words (UTF)
+    //     int document count, then per document: docID (UTF), int length, float norm
+    //     int term count, then per term: term (UTF), int documentFrequency, int collectionFrequency,
+    //       long offset of its postings in the postings section, int size of its postings in bytes,
+    //       float largest normalized term frequency tf / norm of the term, then the block-max
+    //       data of its postings: per block of PostingsList.BLOCK_SIZE postings (the blocks of the
+    //       codecs), float largest normalized term frequency of the block
+    // When an index file is opened the postings section is memory mapped, and a postings
+    // list is only decoded the first time it is used. The block-max data is read at once (a
+    // float per block), so the cursors decoding the postings from the file have it
+
+    private static final int MAGIC = 0x4D424958;
+    static final int VERSION = 1;
+    private static final int HEADER_SIZE = 20;
+
+    private PostingsCodec codec;
+    private MappedByteBuffer postings;
+    private int[] documentFrequencies;
+    private long[] offsets;
+    private float[][] blockMaxNormalizedFrequencies;
+
+    private IndexFile() {
+    }
+
+    // writes an index with its document norms (computeDocumentNorms must have been called) to the file
+    public static void write(InvertedIndex index, String fileName, PostingsCodec codec) throws IOException {
+        TermDictionary dictionary = index.getDictionary();
+        DocTable docTable = index.getDocTable();
+        int terms = dictionary.size();
+        int[] documentFrequencies = new int[terms];
+        long[] offsets = new long[terms];
+        int[] sizes = new int[terms];
+
+        Path path = Paths.get(fileName);
+        try (FileChannel channel = FileChannel.open(path, CREATE, TRUNCATE_EXISTING, WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(codec.getId());
+            out.writeLong(0); // dictionary offset, written at the end
+
+            // postings section
+            long offset = 0;
+            for (int termId = 0; termId < terms; termId++) {
+                PostingsList list = index.getPostingsList(termId);
+                byte[] encoded = codec.encode(list);
+                out.write(encoded);
+                documentFrequencies[termId] = list.size();
+                offsets[termId] = offset;
+                sizes[termId] = encoded.length;
+                offset += encoded.length;
+            }
+            long dictionaryOffset = HEADER_SIZE + offset;
+
+            // dictionary section
+            out.writeInt(dictionary.getStopWords().size());
+            for (String stopWord : dictionary.getStopWords()) {
+                out.writeUTF(stopWord);
+            }
+            out.writeInt(docTable.size());
+            for (int d = 0; d < docTable.size(); d++) {
+                out.writeUTF(docTable.getDocId(d));
+                out.writeInt(docTable.getLength(d));
+                out.writeFloat(index.getDocumentNorm(d));
+            }
+            out.writeInt(terms);
+            for (int termId = 0; termId < terms; termId++) {
+                out.writeUTF(dictionary.getTerm(termId));
+                out.writeInt(documentFrequencies[termId]);
+                out.writeInt((int) index.getCollectionFrequency(termId));
+                out.writeLong(offsets[termId]);
+                out.writeInt(sizes[termId]);
+                out.writeFloat(index.getMaxNormalizedFrequency(termId));
+                // +infinity for a block without block-max data, it then bounds nothing
+                PostingsList list = index.getPostingsList(termId);
+                for (int block = 0; block < list.blockCount(); block++) {
+                    out.writeFloat(list.getBlockMaxNormalizedFrequency(block));
+                }
+            }
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(8);
+            header.putLong(dictionaryOffset);
+            header.flip();
+            channel.write(header, HEADER_SIZE - 8);
+        }
+    }
+
+    // opens an index file, the terms, documents and norms are read at once,
+    // the postings are read from the memory mapped file when first used
+    public static InvertedIndex open(String fileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException(fileName + " is not an index file");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException(fileName + " has version " + version + ", expected version " + VERSION);
+            }
+            IndexFile indexFile = new IndexFile();
+            int codecId = header.getInt();
+            indexFile.codec = PostingsCodec.forId(codecId);
+            if (indexFile.codec == null) {
+                throw new IOException(fileName + " uses an unknown postings codec " + codecId);
+            }
+            long dictionaryOffset = header.getLong();
+            if (dictionaryOffset - HEADER_SIZE > Integer.MAX_VALUE) {
+                throw new IOException(fileName + " has a postings section too large to be mapped");
+            }
+            indexFile.postings = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, dictionaryOffset - HEADER_SIZE);
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    Channels.newInputStream(channel.position(dictionaryOffset)), 1 << 16));
+            TermDictionary dictionary = new TermDictionary();
+            int stopWords = in.readInt();
+            for (int i = 0; i < stopWords; i++) {
+                dictionary.addStopWord(in.readUTF());
+            }
+            DocTable docTable = new DocTable();
+            float[] documentNorms = new float[in.readInt()];
+            for (int d = 0; d < documentNorms.length; d++) {
+                docTable.addDocument(in.readUTF());
+                docTable.addToLength(d, in.readInt());
+                documentNorms[d] = in.readFloat();
+            }
+            int terms = in.readInt();
+            indexFile.documentFrequencies = new int[terms];
+            indexFile.offsets = new long[terms];
+            int[] collectionFrequencies = new int[terms];
+            float[] maxNormalizedFrequencies = new float[terms];
+            indexFile.blockMaxNormalizedFrequencies = new float[terms][];
+            for (int termId = 0; termId < terms; termId++) {
+                dictionary.addTerm(in.readUTF());
+                indexFile.documentFrequencies[termId] = in.readInt();
+                collectionFrequencies[termId] = in.readInt();
+                indexFile.offsets[termId] = in.readLong();
+                in.readInt(); // size in bytes, not needed to decode
+                maxNormalizedFrequencies[termId] = in.readFloat();
+                float[] blockMax = new float[(indexFile.documentFrequencies[termId] + PostingsList.BLOCK_SIZE - 1) / PostingsList.BLOCK_SIZE];
+                for (int block = 0; block < blockMax.length; block++) {
+                    blockMax[block] = in.readFloat();
+                }
+                indexFile.blockMaxNormalizedFrequencies[termId] = blockMax;
+            }
+            return new InvertedIndex(dictionary, docTable, documentNorms, collectionFrequencies, maxNormalizedFrequencies, indexFile);
+        }
+    }
+
+    public int getDocumentFrequency(int termId) {
+        return documentFrequencies[termId];
+    }
+
+    public PostingsCodec getCodec() {
+        return codec;
+    }
+
+    // a cursor decoding the postings of a term from the mapped file while iterating, with their
+    // block-max data. The codecs only use absolute gets on the buffer, so several threads can read at once
+    PostingsCursor cursor(int termId) {
+        return codec.cursor(postings, (int) offsets[termId], documentFrequencies[termId], blockMaxNormalizedFrequencies[termId]);
+    }
+
+    // decodes the whole postings list of a term from the mapped file
+    PostingsList readPostings(int termId) {
+        int size = documentFrequencies[termId];
+        int[] docIds = new int[size];
+        int[] termFrequencies = new int[size];
+        PostingsCursor cursor = cursor(termId);
+        for (int i = 0; i < size; i++) {
+            docIds[i] = cursor.nextDoc();
+            termFrequencies[i] = cursor.termFrequency();
+        }
+        PostingsList list = new PostingsList(docIds, termFrequencies);
+        list.setBlockMaxNormalizedFrequencies(blockMaxNormalizedFrequencies[termId]);
+        return list;
+    }
+}
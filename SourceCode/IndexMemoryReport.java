@@ -0,0 +1,82 @@
+public class IndexMemoryReport {
+
+    // estimates the heap used by the postings of an inverted index, comparing the
+    // primitive array layout (plus one float norm per document) with the previous layout
+    // of one HashMap<String, Integer> plus one HashMap<String, Double> of weights per term
+    // sizes assume a 64 bit JVM with compressed references (12 byte object headers,
+    // 4 byte references, objects aligned to 8 bytes)
+
+    private static final long HASHMAP = 48;
+    private static final long HASHMAP_NODE = 32;
+    private static final long LINKED_HASHMAP_NODE = 40;
+    private static final long BOXED_VALUE = 16;
+    private static final long REFERENCE = 4;
+    private static final long ARRAY_HEADER = 16;
+    private static final long STRING = 24;
+    private static final long POSTINGS_LIST = 32;
+
+    // aligns an object size to 8 bytes
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    // size of a HashMap bucket table holding n entries with the default load factor
+    private static long hashTable(long n) {
+        if (n == 0) {
+            return 0;
+        }
+        long buckets = Integer.highestOneBit((int) Math.max(1, (n * 4 + 2) / 3 - 1)) << 1;
+        return align(ARRAY_HEADER + buckets * REFERENCE);
+    }
+
+    // size of a String of digits (tweet IDs are latin-1, one byte per char)
+    private static long string(int length) {
+        return STRING + align(ARRAY_HEADER + length);
+    }
+
+    public static String report(InvertedIndex index) {
+        DocTable docTable = index.getDocTable();
+        int terms = index.getDictionary().size();
+        long postings = 0;
+        long newPostingsBytes = 0;
+        long oldPostingsBytes = 0;
+        for (int termId = 0; termId < terms; termId++) {
+            PostingsList list = index.getPostingsList(termId);
+            int n = list.size();
+            postings += n;
+            // two primitive arrays (docIds, termFrequencies)
+            newPostingsBytes += POSTINGS_LIST + 2 * align(ARRAY_HEADER + 4L * list.capacity());
+            // termFrequency map and normalized weight map: a node and a boxed value per posting
+            oldPostingsBytes += 2 * (HASHMAP + hashTable(n) + n * (HASHMAP_NODE + BOXED_VALUE));
+            // the two LinkedHashMap entries pointing to the maps of this term
+            oldPostingsBytes += 2 * LINKED_HASHMAP_NODE;
+        }
+        oldPostingsBytes += 2 * (HASHMAP + hashTable(terms));
+
+        // document IDs: the old layout kept the String IDs in an ArrayList,
+        // the doc table also keeps them, plus a HashMap from ID to int
+        long docIdBytes = 0;
+        for (int d = 0; d < docTable.size(); d++) {
+            docIdBytes += string(docTable.getDocId(d).length());
+        }
+        long oldDocBytes = docIdBytes + align(ARRAY_HEADER + REFERENCE * docTable.size());
+        // the doc table map, the lengths and the norms
+        long newDocBytes = oldDocBytes + HASHMAP + hashTable(docTable.size())
+                + docTable.size() * (HASHMAP_NODE + BOXED_VALUE)
+                + 2 * align(ARRAY_HEADER + 4L * docTable.size());
+
+        long oldTotal = oldPostingsBytes + oldDocBytes;
+        long newTotal = newPostingsBytes + newDocBytes;
+        String result = "Index memory estimate (" + terms + " terms, " + docTable.size()
+                + " documents, " + postings + " postings)\n";
+        result += String.format("  %-28s %14s %14s%n", "", "maps", "arrays");
+        result += String.format("  %-28s %14d %14d%n", "postings (bytes)", oldPostingsBytes, newPostingsBytes);
+        result += String.format("  %-28s %14d %14d%n", "document IDs (bytes)", oldDocBytes, newDocBytes);
+        result += String.format("  %-28s %14d %14d%n", "total (bytes)", oldTotal, newTotal);
+        if (postings > 0) {
+            result += String.format("  %-28s %14.1f %14.1f%n", "bytes per posting",
+                    (double) oldPostingsBytes / postings, (double) newPostingsBytes / postings);
+        }
+        return result;
+    }
+}
@@ -1,25 +1,99 @@
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
-public class InvertedIndex {
+public class InvertedIndex implements SearchableIndex {
 
-    private LinkedHashMap<String, HashMap<String, Integer>> invertedIndex;
-    private int documentCount;
-    private ArrayList<String> docIDs;
-    private LinkedHashMap<String, HashMap<String, Double>> normalizedWeightIndex;
+    // postings lists are indexed by the term ID from the dictionary,
+    // documents are stored as dense int IDs from the doc table
+    private TermDictionary dictionary;
+    private DocTable docTable;
+    private ArrayList<PostingsList> invertedIndex;
+    // the norm sqrt(sum_i w_ij^2) of every document, set by computeDocumentNorms,
+    // the normalized weight of a term in a document is computed from it when needed
+    private float[] documentNorms;
+    // the largest normalized term frequency tf / norm of every term: times the idf, an upper
+    // bound of its contribution to a cosine score used for dynamic pruning (set with the norms).
+    // It doesn't depend on the idf, so it stays valid when the idf changes (SegmentedIndex)
+    private float[] maxNormalizedFrequencies;
+    // the similarity the documents are scored with, and the factor of every document for it
+    // (set with the norms, see Similarity.documentFactors)
+    private Similarity similarity;
+    private float[] documentFactors;
+    // the number of occurrences of every term, set with the norms
+    private int[] collectionFrequencies;
+    // set when the index was opened from an index file: the postings lists are
+    // left null and read from the file the first time they are used
+    private IndexFile indexFile;
+    // the postings lists read from the index file (index file only, invertedIndex then only
+    // holds nulls): the lists are published through an atomic array, so a thread searching
+    // the index sees the whole list another thread has read
+    private AtomicReferenceArray<PostingsList> loadedPostings;
+    // when set (index file only), the decoded postings are kept in this bounded cache
+    // instead of being kept in invertedIndex once read
+    private PostingsCache postingsCache;
+    // the tweet IDs of the documents (their docIDs as numbers), parsed when first needed
+    private volatile long[] tweetIds;
+    private long minTweetId;
+    private long maxTweetId;
+    // incremented by every change of the postings or the norms, so that data derived from
+    // the index (as cached results) can tell it is out of date
+    private volatile long generation;
 
-    // constructor will add all the Strings in list to the invertedIndex
-    public InvertedIndex(List<String> data) {
-        invertedIndex = new LinkedHashMap<>();
-        documentCount = 0;
-        docIDs = new ArrayList<>();
-        for (String s : data) {
-            // set up the empty map of documents that have this word
-            HashMap<String, Integer> temp = new HashMap<>();
-            // add the word and its empty list of documents to the index
-            invertedIndex.put(s, temp);
+    // constructor will add all the terms of the dictionary to the invertedIndex
+    public InvertedIndex(TermDictionary dictionary) {
+        this.dictionary = dictionary;
+        docTable = new DocTable();
+        invertedIndex = new ArrayList<>(dictionary.size());
+        for (int termId = 0; termId < dictionary.size(); termId++) {
+            // add the empty list of documents that have this word
+            invertedIndex.add(new PostingsList());
         }
-        normalizedWeightIndex = new LinkedHashMap<>();
-        fillNormalizedWeightIndex();
+        documentNorms = new float[0];
+        maxNormalizedFrequencies = new float[0];
+        similarity = new CosineSimilarity();
+        documentFactors = new float[0];
+        collectionFrequencies = new int[0];
+    }
+
+    // constructor for an index opened from an index file (see IndexFile.open)
+    InvertedIndex(TermDictionary dictionary, DocTable docTable, float[] documentNorms, int[] collectionFrequencies,
+            float[] maxNormalizedFrequencies, IndexFile indexFile) {
+        this.dictionary = dictionary;
+        this.docTable = docTable;
+        this.documentNorms = documentNorms;
+        this.collectionFrequencies = collectionFrequencies;
+        this.maxNormalizedFrequencies = maxNormalizedFrequencies;
+        this.indexFile = indexFile;
+        invertedIndex = new ArrayList<>(Collections.nCopies(dictionary.size(), (PostingsList) null));
+        loadedPostings = new AtomicReferenceArray<>(dictionary.size());
+        similarity = new CosineSimilarity();
+        documentFactors = similarity.documentFactors(documentNorms, docTable, getAverageLength());
+    }
+
+    // returns the postings of the given word, or null if the word is not in the index
+    private PostingsList postings(String word) {
+        int termId = dictionary.getId(word);
+        if (termId == TermDictionary.NOT_FOUND || termId >= invertedIndex.size()) {
+            return null;
+        }
+        return getPostingsList(termId);
+    }
+
+    // returns the postings list of a term if it is in memory, or null
+    private PostingsList postingsInMemory(int termId) {
+        return loadedPostings != null ? loadedPostings.get(termId) : invertedIndex.get(termId);
+    }
+
+    // reads the postings list of a term from the index file
+    private synchronized PostingsList loadPostings(int termId) {
+        PostingsList list = loadedPostings.get(termId);
+        if (list == null) {
+            list = indexFile.readPostings(termId);
+            loadedPostings.set(termId, list);
+        }
+        return list;
     }
 
     // use this method to add a document with the specified word
@@ -27,25 +101,57 @@ public class InvertedIndex {
     // then the termFrequency is updated,
     // otherwise, a new entry is made with termFrequency = 1
     public void addDocument(String word, String documentID) {
+        generation++;
         // confirm that word is in the invertedIndex
-        if(!invertedIndex.containsKey(word)) return;
-
-        HashMap<String, Integer> list = invertedIndex.get(word);
-        // check if this document is already here
-        if (list.containsKey(documentID)) {
-            // this document is already here, so update the termFrequency
-            list.put(documentID, list.get(documentID) + 1);
-        } else {
-            // this is a new document for this word, add it to the list
-            list.put(documentID, 1);
-            // also update the document count
-            // check if this document is anywhere in the invertedIndex
-            // if not, update documentCount
-            if(!docIDs.contains(documentID)) {
-                docIDs.add(documentID);
-                documentCount++;
+        PostingsList list = postings(word);
+        if(list == null) return;
+
+        // a document is only counted once it contains a word of the index
+        int docId = docTable.addDocument(documentID);
+        docTable.addToLength(docId, 1);
+        list.addOccurrence(docId);
+    }
+
+    // adds the postings of a whole document at once, used by IndexBuilder
+    // termIds[i] occurs termFrequencies[i] times in the document, the terms must be in the dictionary
+    void addPostings(int docId, int[] termIds, int[] termFrequencies, int count) {
+        generation++;
+        for (int i = 0; i < count; i++) {
+            int termId = termIds[i];
+            // the dictionary grows while documents are read, add lists for the new terms
+            while (invertedIndex.size() <= termId) {
+                invertedIndex.add(new PostingsList());
             }
+            getPostingsList(termId).add(docId, termFrequencies[i]);
+        }
+    }
+
+    // appends the documents and postings of a partial index built from a later part of the data,
+    // the terms and documents of the partial index are added in their own order, so merging the
+    // partial indexes of consecutive parts of the data gives the same index as reading it at once
+    public void merge(InvertedIndex partial) {
+        generation++;
+        TermDictionary partialDictionary = partial.getDictionary();
+        DocTable partialDocs = partial.getDocTable();
 
+        int[] termIds = new int[partialDictionary.size()];
+        for (int t = 0; t < termIds.length; t++) {
+            termIds[t] = dictionary.addTerm(partialDictionary.getTerm(t));
+        }
+        int[] docIds = new int[partialDocs.size()];
+        for (int d = 0; d < docIds.length; d++) {
+            docIds[d] = docTable.addDocument(partialDocs.getDocId(d));
+            docTable.addToLength(docIds[d], partialDocs.getLength(d));
+        }
+        while (invertedIndex.size() < dictionary.size()) {
+            invertedIndex.add(new PostingsList());
+        }
+        for (int t = 0; t < termIds.length; t++) {
+            PostingsList from = partial.getPostingsList(t);
+            PostingsList to = getPostingsList(termIds[t]);
+            for (int i = 0; i < from.size(); i++) {
+                to.add(docIds[from.getDocId(i)], from.getTermFrequency(i));
+            }
         }
     }
 
@@ -53,98 +159,415 @@ public class InvertedIndex {
     // Note: this shouldn't be called until all documents have been entered, as it is
     // dependant upon the number of documents
     // specifically, calculates idf = log_2( # of docs / documentFreq )
+    @Override
     public double getTermIDF(String word) {
-        double docFreq = (double) getDocumentFrequency(word);
+        return getTermIDF(getDocumentFrequency(word));
+    }
+
+    private double getTermIDF(int documentFrequency) {
+        double docFreq = (double) documentFrequency;
         if(docFreq == 0) {
             return 0;
         }else {
-            return Math.log((double) documentCount / docFreq) / Math.log(2);
+            return Math.log((double) getDocumentCount() / docFreq) / Math.log(2);
         }
     }
 
+    @Override
+    public long getCollectionFrequency(String word) {
+        int termId = dictionary.getId(word);
+        if (termId == TermDictionary.NOT_FOUND || termId >= invertedIndex.size()) {
+            return 0;
+        }
+        return getCollectionFrequency(termId);
+    }
+
+    // returns the number of occurrences of a term in all the documents
+    // (counted from the postings until computeDocumentNorms has been called)
+    public long getCollectionFrequency(int termId) {
+        if (termId < collectionFrequencies.length) {
+            return collectionFrequencies[termId];
+        }
+        int collectionFrequency = 0;
+        PostingsCursor postings = getPostingsCursor(termId);
+        for (int doc = postings.nextDoc(); doc != PostingsCursor.NO_MORE_DOCS; doc = postings.nextDoc()) {
+            collectionFrequency += postings.termFrequency();
+        }
+        return collectionFrequency;
+    }
+
+    @Override
+    public long getTokenCount() {
+        return docTable.getTokenCount();
+    }
+
+    // the average number of indexed tokens of the documents
+    public double getAverageLength() {
+        return docTable.size() == 0 ? 0 : (double) docTable.getTokenCount() / docTable.size();
+    }
+
     // calculates and returns the w_ij = tf_ij * idf_i of the given word and document
     public double getTermDocumentWeight(String word, String documentID) {
         double idf = getTermIDF(word);
-        double tf = invertedIndex.get(word).get(documentID);
+        double tf = getTermFrequency(word, documentID);
         return idf * tf;
     }
     // returns the document frequency for a given word
+    @Override
     public int getDocumentFrequency(String word) {
-        if (invertedIndex.get(word) == null) {
+        int termId = dictionary.getId(word);
+        if (termId == TermDictionary.NOT_FOUND || termId >= invertedIndex.size()) {
             return 0;
         }
-        return invertedIndex.get(word).size();
+        return getDocumentFrequency(termId);
+    }
+
+    // returns the document frequency of a term, without reading its postings from the index file
+    public int getDocumentFrequency(int termId) {
+        PostingsList list = postingsInMemory(termId);
+        if (list == null && indexFile != null) {
+            return indexFile.getDocumentFrequency(termId);
+        }
+        return list.size();
     }
 
     // returns the term frequency for a given word and document
     public int getTermFrequency(String word, String documentID) {
-        return invertedIndex.get(word).get(documentID);
+        PostingsList list = postings(word);
+        int position = list.find(docTable.getId(documentID));
+        return position < 0 ? 0 : list.getTermFrequency(position);
+    }
+
+    // number of documents containing at least one word of the index
+    @Override
+    public int getDocumentCount() {
+        return docTable.size();
+    }
+
+    // number of postings of all the terms
+    public long getPostingsCount() {
+        long postings = 0;
+        for (int termId = 0; termId < invertedIndex.size(); termId++) {
+            postings += getDocumentFrequency(termId);
+        }
+        return postings;
     }
 
 
     // add a word to the inverted index
     public void addWord(String word) {
-        // set up the empty map of documents that have this word
-        HashMap<String, Integer> temp = new HashMap<>();
+        generation++;
+        int termId = dictionary.addTerm(word);
+        // add empty lists of documents for any term the index doesn't have yet
+        while (invertedIndex.size() <= termId) {
+            invertedIndex.add(new PostingsList());
+        }
+    }
 
-        // add the word and its empty list of documents to the index
-        invertedIndex.put(word, temp);
+    // computes the norm sqrt(sum_i w_ij^2) of every document, with w_ij = tf_ij * idf_i
+    // this is a single pass over the postings, the idf of a term is computed once,
+    // then a second pass finds the largest normalized term frequency of every term.
+    // The factors of the documents for the similarity are computed with the norms
+    public void computeDocumentNorms() {
+        double[] termIDFs = new double[invertedIndex.size()];
+        for (int termId = 0; termId < termIDFs.length; termId++) {
+            termIDFs[termId] = getTermIDF(getDocumentFrequency(termId));
+        }
+        computeDocumentNorms(termIDFs, similarity, getAverageLength());
     }
 
-    public void fillNormalizedWeightIndex() {
-        HashMap<String, Double> factorsPerDoc = new HashMap<>();
-        //Scanning the inverted index and computing the normalizing factors for each doc
+    // same as computeDocumentNorms, with the idf of every term ID, the similarity and the average
+    // length of the documents given: a segment of a SegmentedIndex uses the statistics of all the segments
+    void computeDocumentNorms(double[] termIDFs, Similarity similarity, double averageLength) {
+        generation++;
+        double[] factorsPerDoc = new double[docTable.size()];
+        collectionFrequencies = new int[invertedIndex.size()];
         //For each word, scanning its posting list
-        for (String word : invertedIndex.keySet()){
-            for (String docID : invertedIndex.get(word).keySet()){
-                double weight = getTermDocumentWeight(word, docID);
-                if (factorsPerDoc.containsKey(docID)) {
-                    // this document is already here, so update the factor: + weight^2
-                    factorsPerDoc.put(docID, factorsPerDoc.get(docID) + Math.pow(weight, (double) 2));
-                } else {
-                    // this is a new document for this word, create its normalizing factor
-                    factorsPerDoc.put(docID, Math.pow(weight, (double) 2));
+        for (int termId = 0; termId < invertedIndex.size(); termId++) {
+            PostingsList list = getPostingsList(termId);
+            double idf = termIDFs[termId];
+            for (int i = 0; i < list.size(); i++) {
+                double weight = idf * list.getTermFrequency(i);
+                // update the factor of the document: + weight^2
+                factorsPerDoc[list.getDocId(i)] += weight * weight;
+                collectionFrequencies[termId] += list.getTermFrequency(i);
+            }
+        }
+        documentNorms = new float[factorsPerDoc.length];
+        for (int d = 0; d < factorsPerDoc.length; d++) {
+            // a document whose terms all have an idf of 0 gets an infinite norm, so that its
+            // normalized weights are 0 (and not NaN) even if the idf of its terms grows later
+            documentNorms[d] = factorsPerDoc[d] == 0 ? Float.POSITIVE_INFINITY : (float) Math.sqrt(factorsPerDoc[d]);
+        }
+        maxNormalizedFrequencies = new float[invertedIndex.size()];
+        for (int termId = 0; termId < invertedIndex.size(); termId++) {
+            maxNormalizedFrequencies[termId] = computeMaxNormalizedFrequency(termId);
+        }
+        this.similarity = similarity;
+        documentFactors = similarity.documentFactors(documentNorms, docTable, averageLength);
+    }
+
+    // a copy of this index (in memory) with norms computed with the given idf, as
+    // computeDocumentNorms: the documents and the postings are shared, but not the block-max
+    // data, so this index keeps its norms and can be searched meanwhile
+    InvertedIndex withDocumentNorms(double[] termIDFs, Similarity similarity, double averageLength) {
+        InvertedIndex copy = new InvertedIndex(dictionary);
+        copy.docTable = docTable;
+        for (int termId = 0; termId < invertedIndex.size(); termId++) {
+            copy.invertedIndex.set(termId, new PostingsList(invertedIndex.get(termId)));
+        }
+        copy.computeDocumentNorms(termIDFs, similarity, averageLength);
+        return copy;
+    }
+
+    // scores the documents with the given similarity: the factors of the documents are computed
+    // for it from the norms (computeDocumentNorms must have been called) and the lengths.
+    // The index must not be searched meanwhile
+    public void setSimilarity(Similarity similarity) {
+        setSimilarity(similarity, getAverageLength());
+    }
+
+    // same as setSimilarity, with the average length of the documents of the whole index given
+    void setSimilarity(Similarity similarity, double averageLength) {
+        generation++;
+        this.similarity = similarity;
+        documentFactors = similarity.documentFactors(documentNorms, docTable, averageLength);
+    }
+
+    @Override
+    public Similarity getSimilarity() {
+        return similarity;
+    }
+
+    // returns the factor of a document for the similarity (valid once computeDocumentNorms has been called)
+    @Override
+    public float getDocumentFactor(int docId) {
+        return documentFactors[docId];
+    }
+
+    // tf / norm rounded up to a float, so that it is an upper bound of the exact value
+    private static float normalizedFrequency(int termFrequency, float norm) {
+        double value = termFrequency / (double) norm;
+        float rounded = (float) value;
+        return rounded < value ? Math.nextUp(rounded) : rounded;
+    }
+
+    // the largest normalized term frequency of a term,
+    // the block-max data of a postings list in memory is set on the way
+    private float computeMaxNormalizedFrequency(int termId) {
+        PostingsList list = postingsInMemory(termId);
+        if (list != null) {
+            float[] blockMax = new float[list.blockCount()];
+            for (int i = 0; i < list.size(); i++) {
+                float value = normalizedFrequency(list.getTermFrequency(i), documentNorms[list.getDocId(i)]);
+                int block = i / PostingsList.BLOCK_SIZE;
+                blockMax[block] = Math.max(blockMax[block], value);
+            }
+            list.setBlockMaxNormalizedFrequencies(blockMax);
+            float max = 0;
+            for (float value : blockMax) {
+                max = Math.max(max, value);
+            }
+            return max;
+        }
+        float max = 0;
+        PostingsCursor postings = getPostingsCursor(termId);
+        for (int doc = postings.nextDoc(); doc != PostingsCursor.NO_MORE_DOCS; doc = postings.nextDoc()) {
+            max = Math.max(max, normalizedFrequency(postings.termFrequency(), documentNorms[doc]));
+        }
+        return max;
+    }
+
+    // returns the largest normalized term frequency tf / norm of a term over all the documents
+    // (valid once computeDocumentNorms has been called, or stored in the index file)
+    public float getMaxNormalizedFrequency(int termId) {
+        return maxNormalizedFrequencies[termId];
+    }
+
+    @Override
+    public float getMaxNormalizedFrequency(String word) {
+        int termId = dictionary.getId(word);
+        if (termId == TermDictionary.NOT_FOUND || termId >= invertedIndex.size()) {
+            return 0;
+        }
+        return getMaxNormalizedFrequency(termId);
+    }
+
+    // returns the norm of a document (valid once computeDocumentNorms has been called)
+    @Override
+    public float getDocumentNorm(int docId) {
+        return documentNorms[docId];
+    }
+
+    // returns the normalized weight w_ij / norm_j of a word in a document
+    public double getNormalizedWeight(String word, String documentID) {
+        int docId = docTable.getId(documentID);
+        if (docId == DocTable.NOT_FOUND) {
+            return 0;
+        }
+        return getTermDocumentWeight(word, documentID) / documentNorms[docId];
+    }
+
+
+    public PostingsList getPostingsList(String word) {
+        return postings(word);
+    }
+
+    // returns the postings list of the given term ID
+    public PostingsList getPostingsList(int termId) {
+        PostingsList list = postingsInMemory(termId);
+        if (list == null && indexFile != null) {
+            if (postingsCache == null) {
+                return loadPostings(termId);
+            }
+            list = postingsCache.get(termId);
+            if (list == null) {
+                list = indexFile.readPostings(termId);
+                postingsCache.put(termId, list);
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public PostingsCursor getPostingsCursor(String word) {
+        int termId = dictionary.getId(word);
+        if (termId == TermDictionary.NOT_FOUND || termId >= invertedIndex.size()) {
+            return null;
+        }
+        return getPostingsCursor(termId);
+    }
+
+    // returns a cursor over the postings of the given term ID, if the postings list is not
+    // in memory the cursor decodes it from the index file while iterating
+    public PostingsCursor getPostingsCursor(int termId) {
+        PostingsList list = postingsInMemory(termId);
+        if (list == null && indexFile != null) {
+            if (postingsCache == null) {
+                return indexFile.cursor(termId);
+            }
+            // a list the cache admits is decoded at once and cached (if it still admits it once
+            // decoded), others are decoded while iterating
+            list = postingsCache.get(termId);
+            if (list == null) {
+                if (!postingsCache.admit(termId, indexFile.getDocumentFrequency(termId))) {
+                    return indexFile.cursor(termId);
                 }
+                list = indexFile.readPostings(termId);
+                postingsCache.put(termId, list);
             }
-            // normalizedWeightIndex.put(word, factorsPerDoc);
         }
-        //filling normalizedWeightIndex: copying the inverted index and
-        // dividing each weight by its corresponding factor
-        for (String word : invertedIndex.keySet()){
-            HashMap<String, Double> temp = new HashMap<>();
-            // add the word and its empty list of documents to the index
-            normalizedWeightIndex.put(word, temp);
+        return list.cursor();
+    }
 
-            for (String docID : getPostingsList(word).keySet()){
-                double factor = Math.sqrt(factorsPerDoc.get(docID));
-                normalizedWeightIndex.get(word).put(docID, getTermDocumentWeight(word, docID) / factor);
+    // keeps the postings decoded from the index file in a bounded cache (instead of keeping
+    // every list read), only used by an index opened from an index file
+    public void setPostingsCache(PostingsCache postingsCache) {
+        this.postingsCache = postingsCache;
+    }
+
+    public PostingsCache getPostingsCache() {
+        return postingsCache;
+    }
 
+    // releases the unused capacity of the postings lists once all documents are added
+    // (the lists read from an index file have no unused capacity)
+    public void trim() {
+        for (PostingsList list : invertedIndex) {
+            if (list != null) {
+                list.trim();
             }
         }
     }
 
-    //get the normalized weights for a given word by going to the NormalizedWeightIndex
-    public HashMap<String, Double> getNormalizedWeight(String word) {
-        return normalizedWeightIndex.get(word);
+    // the generation of the index, it changes whenever the index does
+    @Override
+    public long getGeneration() {
+        return generation;
     }
 
+    @Override
+    public SearchableIndex snapshot() {
+        return this;
+    }
 
-    public HashMap<String, Integer> getPostingsList(String word) {
-        return invertedIndex.get(word);
+    @Override
+    public String getDocumentID(int docId) {
+        return docTable.getDocId(docId);
     }
 
     @Override
-    public String toString() {
-        String result = "Word\tdocFreq --> [ DocId, termFreq ]\n";
-        result += "-----------------------------------------------\n";
-        for(String word : invertedIndex.keySet()) {
-            HashMap<String, Integer> list = invertedIndex.get(word);
-            result += word + " " + list.size() + " --> ";
-            for(String s : list.keySet()) {
-                result += " [" + s + ", " + list.get(s) + "] ";
+    public long getTweetId(int docId) {
+        return tweetIds()[docId];
+    }
+
+    @Override
+    public long getMinTweetId() {
+        tweetIds();
+        return minTweetId;
+    }
+
+    @Override
+    public long getMaxTweetId() {
+        tweetIds();
+        return maxTweetId;
+    }
+
+    // parses the tweet IDs of the documents, again if documents were added since
+    private long[] tweetIds() {
+        long[] ids = tweetIds;
+        if (ids != null && ids.length == docTable.size()) {
+            return ids;
+        }
+        synchronized (this) {
+            ids = new long[docTable.size()];
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (int d = 0; d < ids.length; d++) {
+                try {
+                    ids[d] = Long.parseLong(docTable.getDocId(d));
+                } catch (NumberFormatException e) {
+                    ids[d] = 0;
+                }
+                min = Math.min(min, ids[d]);
+                max = Math.max(max, ids[d]);
             }
-            result += "\n";
+            minTweetId = min;
+            maxTweetId = max;
+            tweetIds = ids;
+            return ids;
+        }
+    }
+
+    @Override
+    public int getShardCount() {
+        return 1;
+    }
+
+    @Override
+    public SearchableIndex getShard(int shard) {
+        return this;
+    }
+
+    @Override
+    public TermDictionary getDictionary() {
+        return dictionary;
+    }
+
+    public DocTable getDocTable() {
+        return docTable;
+    }
+
+    @Override
+    public String toString() {
+        // words are listed alphabetically, as in the vocabulary (see IndexExport to write a large
+        // index to a file instead)
+        StringWriter result = new StringWriter();
+        try {
+            new IndexExport().export(this, result);
+        } catch (IOException e) {
+            // a StringWriter doesn't throw
         }
-        return result;
+        return result.toString();
     }
 }
@@ -0,0 +1,84 @@
+public class LatencyHistogram {
+
+    // counts latencies (in nanoseconds) in log-linear buckets: each power of two is split in
+    // SUB_BUCKETS buckets, so a percentile is known within 1 / SUB_BUCKETS (about 6%) whatever
+    // the latency, with a fixed memory of about a thousand counters. Latencies can be recorded
+    // by several threads
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private long[] counts = new long[(64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS];
+    private long count;
+    private long sum;
+    private long max;
+
+    // the bucket of a latency: the latencies below SUB_BUCKETS have their own bucket, the others
+    // are grouped by their highest bit and the SUB_BUCKET_BITS bits after it
+    static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) Math.max(0, nanos);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    // the largest latency of a bucket
+    static long bucketLimit(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        long lowest = (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+        return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    public synchronized void record(long nanos) {
+        counts[bucket(nanos)]++;
+        count++;
+        sum += nanos;
+        max = Math.max(max, nanos);
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized double getMeanMillis() {
+        return count == 0 ? 0 : sum / 1e6 / count;
+    }
+
+    public synchronized double getMaxMillis() {
+        return max / 1e6;
+    }
+
+    public synchronized double getSumSeconds() {
+        return sum / 1e9;
+    }
+
+    // the latency (in ms) below which a fraction q of the latencies are: the limit of the bucket
+    // holding the latency of rank ceil(q * count), at most the largest latency
+    public synchronized double getPercentileMillis(double q) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return Math.min(bucketLimit(bucket), max) / 1e6;
+            }
+        }
+        return max / 1e6;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d queries, mean %.3f ms, p50 %.3f ms, p90 %.3f ms, p99 %.3f ms, max %.3f ms",
+                count, getMeanMillis(), getPercentileMillis(0.5), getPercentileMillis(0.9),
+                getPercentileMillis(0.99), getMaxMillis());
+    }
+}
@@ -1,177 +1,502 @@
 import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.text.DecimalFormat;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 
-import static java.nio.file.StandardOpenOption.APPEND;
 import static java.nio.file.StandardOpenOption.CREATE;
 import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
 
 public class Main {
 
-    public static void main(String[] args) {
+    // documents per topic in the run file by default: the run files have always listed the
+    // ranks 1 to 999, --top=1000 lists the 1000 documents a TREC run may have
+    static final int DEFAULT_RUN_TOP_K = 999;
 
-        // preprocess the files
-        Prepro2 preprocessor = new Prepro2();
-        System.out.println("Preprocessing the data...");
-        List<String> vocabulary = preprocessor.getVocabulary("../StopWords.txt", "../Trec_microblog11.txt");
-        System.out.println("Vocabulary size: " + vocabulary.size());
+    public static void main(String[] args) {
 
-        // output the vocabulary to a file for reference
-        Path p = Paths.get("../Results/step1_vocabulary.txt");
-        try {
-            OutputStream out = new BufferedOutputStream(
-                Files.newOutputStream(p, CREATE, TRUNCATE_EXISTING));
-            for(String word : vocabulary) {
-                word += "\n";
-                byte data[] = word.getBytes();
-                out.write(data, 0, data.length);
+        // number of threads used to preprocess the data, set with --workers=N
+        int workers = Runtime.getRuntime().availableProcessors();
+        // read the data file through a memory mapped tokenizer, set with --mmap
+        boolean memoryMapped = false;
+        // open a saved index instead of preprocessing the data, set with --index=FILE
+        String indexFileName = null;
+        // save the index once it is built, set with --save-index=FILE
+        String saveIndexFileName = null;
+        // codec of the postings in the saved index, set with --codec=vbyte or --codec=block
+        PostingsCodec codec = new VByteCodec();
+        // how the documents are scored, set with --similarity=cosine, --similarity=bm25 or --similarity=dirichlet
+        Similarity similarity = new CosineSimilarity();
+        // number of documents ranked per query, set with --top=N
+        int topK = DEFAULT_RUN_TOP_K;
+        // score the queries document at a time with MaxScore pruning, set with --prune
+        boolean dynamicPruning = false;
+        // number of threads scoring the queries, set with --threads=N (1 scores them in turn)
+        int threads = 1;
+        // score the queries on virtual threads (Java 21), set with --virtual-threads
+        boolean virtualThreads = false;
+        // answer queries over HTTP on this port instead of running the topics, set with --serve=PORT
+        int servePort = -1;
+        // with --serve=PORT, listen on this address instead of the loopback address, set with --bind=ADDRESS
+        // (--bind=0.0.0.0 accepts queries from other hosts)
+        String bindAddress = null;
+        // cache the ranked results in at most N megabytes, set with --cache-mb=N
+        long cacheBytes = 0;
+        // with --index=FILE, keep at most N megabytes of decoded postings, set with --postings-cache-mb=N
+        long postingsCacheBytes = 0;
+        // append the tweets of this data file to the index as it grows in real time, set with --append=FILE
+        String appendFileName = null;
+        // number of lines of the appended file added to the index at once, set with --append-batch=N
+        int appendBatch = 1000;
+        // build the index as segments (one per chunk of the data) merged in the background, set with --segmented
+        boolean segmented = false;
+        // largest number of documents of a merged segment (time shard), set with --max-segment-docs=N
+        int maxSegmentDocs = Integer.MAX_VALUE;
+        // rank only the tweets posted up to the tweet time of each topic, set with --time-cutoff
+        boolean timeCutoff = false;
+        // write the run file gzip compressed (Trec_microblog11-results.txt.gz), set with --gzip
+        boolean gzip = false;
+        // write the time, allocation and throughput of each stage to this file, set with --metrics=FILE
+        String metricsFileName = null;
+        // format of the metrics file, set with --metrics-format=json or --metrics-format=prometheus
+        String metricsFormat = PipelineMetrics.JSON;
+        for (String arg : args) {
+            if (arg.startsWith("--workers=")) {
+                workers = Integer.parseInt(arg.substring("--workers=".length()));
+            } else if (arg.equals("--mmap")) {
+                memoryMapped = true;
+            } else if (arg.startsWith("--index=")) {
+                indexFileName = arg.substring("--index=".length());
+            } else if (arg.startsWith("--save-index=")) {
+                saveIndexFileName = arg.substring("--save-index=".length());
+            } else if (arg.startsWith("--codec=")) {
+                codec = PostingsCodec.forName(arg.substring("--codec=".length()));
+                if (codec == null) {
+                    System.err.println("Unknown codec " + arg.substring("--codec=".length()));
+                    return;
+                }
+            } else if (arg.startsWith("--similarity=")) {
+                similarity = Similarity.forName(arg.substring("--similarity=".length()));
+                if (similarity == null) {
+                    System.err.println("Unknown similarity " + arg.substring("--similarity=".length()));
+                    return;
+                }
+            } else if (arg.equals("--prune")) {
+                dynamicPruning = true;
+            } else if (arg.startsWith("--top=")) {
+                topK = Integer.parseInt(arg.substring("--top=".length()));
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else if (arg.equals("--virtual-threads")) {
+                virtualThreads = true;
+            } else if (arg.startsWith("--postings-cache-mb=")) {
+                postingsCacheBytes = Long.parseLong(arg.substring("--postings-cache-mb=".length())) << 20;
+            } else if (arg.startsWith("--cache-mb=")) {
+                cacheBytes = Long.parseLong(arg.substring("--cache-mb=".length())) << 20;
+            } else if (arg.startsWith("--append=")) {
+                appendFileName = arg.substring("--append=".length());
+            } else if (arg.startsWith("--append-batch=")) {
+                appendBatch = Integer.parseInt(arg.substring("--append-batch=".length()));
+            } else if (arg.equals("--segmented")) {
+                segmented = true;
+            } else if (arg.startsWith("--max-segment-docs=")) {
+                maxSegmentDocs = Integer.parseInt(arg.substring("--max-segment-docs=".length()));
+            } else if (arg.equals("--time-cutoff")) {
+                timeCutoff = true;
+            } else if (arg.equals("--gzip")) {
+                gzip = true;
+            } else if (arg.startsWith("--metrics=")) {
+                metricsFileName = arg.substring("--metrics=".length());
+            } else if (arg.startsWith("--metrics-format=")) {
+                metricsFormat = arg.substring("--metrics-format=".length());
+                if (!PipelineMetrics.isFormat(metricsFormat)) {
+                    System.err.println("Unknown metrics format " + metricsFormat);
+                    return;
+                }
+            } else if (arg.startsWith("--serve=")) {
+                servePort = Integer.parseInt(arg.substring("--serve=".length()));
+            } else if (arg.startsWith("--bind=")) {
+                bindAddress = arg.substring("--bind=".length());
             }
-        } catch (IOException x) {
-            System.err.println(x);
         }
 
-        // corpus is list of [documentID, [array of document tokens]]
-        List<List<String>> corpus = preprocessor.getCorpus();
+        if (segmented && saveIndexFileName != null) {
+            // an index file holds a single index, the segments are merged only in the background
+            System.out.println("--save-index can't be used with --segmented: build a single index to save it");
+            return;
+        }
+
+        TieredMergePolicy mergePolicy = new TieredMergePolicy();
+        mergePolicy.setMaxSegmentSize(maxSegmentDocs);
+        // the time, allocation and throughput of each stage, printed at the end of the run
+        PipelineMetrics metrics = new PipelineMetrics();
 
-        List<String> stopWords = preprocessor.getStopWordList();
-        // get the size of each of the documents
-        HashMap<String, Integer> documentLengths = preprocessor.getDocLength();
+        InvertedIndex invertedIndex = null;
+        SegmentedIndex segmentedIndex = null;
+        if (indexFileName != null) {
+            // the index file already has the document norms, the postings are read when first used
+            System.out.println("Opening the index file " + indexFileName + "...");
+            try {
+                PipelineMetrics.Stage read = metrics.stage("read");
+                read.start();
+                invertedIndex = IndexFile.open(indexFileName);
+                read.stop();
+                read.setCounts(invertedIndex.getDocumentCount(), 0);
+                if (postingsCacheBytes > 0) {
+                    invertedIndex.setPostingsCache(new PostingsCache(postingsCacheBytes));
+                }
+            } catch (IOException x) {
+                System.err.println(x);
+                return;
+            }
+            System.out.println("Vocabulary size: " + invertedIndex.getDictionary().size());
+        } else if (segmented) {
+            // bulk load: the partial indexes of the chunks are searched as they are, the merge
+            // policy merges them in the background
+            Prepro2 preprocessor = new Prepro2();
+            preprocessor.setMemoryMapped(memoryMapped);
+            System.out.println("Preprocessing the data into index segments (" + workers + " workers)...");
+            PipelineMetrics.Stage preprocess = metrics.stage("preprocess");
+            preprocess.start();
+            List<InvertedIndex> segments = preprocessor.buildSegments("../StopWords.txt", "../Trec_microblog11.txt", workers);
+            preprocess.stop();
+            System.out.println(preprocessor.getStemCache());
+            long documents = 0;
+            long postings = 0;
+            for (InvertedIndex segment : segments) {
+                documents += segment.getDocumentCount();
+                postings += segment.getPostingsCount();
+            }
+            addPreprocessStages(metrics, preprocessor, documents, postings);
+            List<String> vocabulary = segmentsVocabulary(segments);
+            System.out.println("Vocabulary size: " + vocabulary.size());
 
-        // build the inverted index
-        //create the data structure for inverted index (filling words and empty arrays)
-        System.out.println("Creating the inverted index...");
-        InvertedIndex invertedIndex = new InvertedIndex(vocabulary);
+            // output the vocabulary and the index to files for reference, the index segment by segment
+            PipelineMetrics.Stage write = metrics.stage("write");
+            write.start();
+            writeVocabulary(vocabulary);
+            writeInvertedIndex(segments);
+            write.stop();
+            System.out.println("Computing the document norms");
+            PipelineMetrics.Stage normalize = metrics.stage("normalize");
+            normalize.start();
+            segmentedIndex = SegmentedIndex.bulkLoad(segments, mergePolicy);
+            normalize.stop();
+            normalize.setCounts(documents, postings);
+            System.out.println(segmentedIndex);
+        } else {
+            // preprocess the files and build the inverted index in a single pass
+            Prepro2 preprocessor = new Prepro2();
+            preprocessor.setMemoryMapped(memoryMapped);
+            System.out.println("Preprocessing the data and filling the inverted index (" + workers + " workers)...");
+            PipelineMetrics.Stage preprocess = metrics.stage("preprocess");
+            preprocess.start();
+            invertedIndex = preprocessor.buildIndex("../StopWords.txt", "../Trec_microblog11.txt", workers);
+            preprocess.stop();
+            addPreprocessStages(metrics, preprocessor, invertedIndex.getDocumentCount(), invertedIndex.getPostingsCount());
+            List<String> vocabulary = preprocessor.getVocabulary();
+            System.out.println("Vocabulary size: " + vocabulary.size());
+            System.out.println(preprocessor.getStemCache());
+            System.out.print(IndexMemoryReport.report(invertedIndex));
 
-        System.out.println("Filling the inverted index...");
-        // fill the postings lists of the inverted index
-        for (int d = 0; d < corpus.size(); d++) {
-            //separating tokens
-            List<String> doc = corpus.get(d);
+            // output the vocabulary and the index to files for reference
+            PipelineMetrics.Stage write = metrics.stage("write");
+            write.start();
+            writeVocabulary(vocabulary);
+            writeInvertedIndex(invertedIndex);
+            write.stop();
 
-            //getting the doc ID
-            String docId = doc.get(0); //to be stored now (deleted right after)
-            docId = docId.replaceAll("[^0-9]",""); //removing noisy characters in the docID
+            System.out.println("Computing the document norms");
+            PipelineMetrics.Stage normalize = metrics.stage("normalize");
+            normalize.start();
+            // the normalized weights are computed from the norms while scoring
+            invertedIndex.computeDocumentNorms();
+            normalize.stop();
+            normalize.setCounts(invertedIndex.getDocumentCount(), invertedIndex.getPostingsCount());
 
-            for (int i = 1; i < doc.size();i++) {
-                String token = doc.get(i);
-                // add the document containing this token to the inverted index
-                invertedIndex.addDocument(token,docId);
+            if (saveIndexFileName != null) {
+                System.out.println("Saving the index file " + saveIndexFileName + "...");
+                write.start();
+                try {
+                    IndexFile.write(invertedIndex, saveIndexFileName, codec);
+                } catch (IOException x) {
+                    System.err.println(x);
+                }
+                write.stop();
             }
         }
 
-        // take this line out if testing on full data set
-        // System.out.println(invertedIndex);
+        // the index the queries are run on: a server (whose tweets can be appended with POST /append)
+        // and --append use a segmented index, which can grow while it is searched
+        if (segmentedIndex == null && (appendFileName != null || servePort >= 0)) {
+            segmentedIndex = new SegmentedIndex(invertedIndex);
+            segmentedIndex.setMergePolicy(mergePolicy);
+        }
+        // the factors of the documents for the similarity are computed before any query (and
+        // for every appended segment)
+        PipelineMetrics.Stage normalize = metrics.stage("normalize");
+        normalize.start();
+        if (segmentedIndex != null) {
+            segmentedIndex.setSimilarity(similarity);
+        } else {
+            invertedIndex.setSimilarity(similarity);
+        }
+        normalize.stop();
+        if (appendFileName != null) {
+            System.out.println("Appending the tweets of " + appendFileName + " in batches of " + appendBatch + " lines...");
+            PipelineMetrics.Stage append = metrics.stage("append");
+            append.start();
+            long start = System.nanoTime();
+            try {
+                appendTweets(segmentedIndex, appendFileName, appendBatch);
+            } catch (IOException x) {
+                System.err.println(x);
+                return;
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            append.stop();
+            append.setCounts(segmentedIndex.getAppendedDocuments(), 0);
+            System.out.println(String.format("Appended %d documents in %.1f ms (%.0f documents/s)",
+                    segmentedIndex.getAppendedDocuments(), seconds * 1000, segmentedIndex.getAppendedDocuments() / seconds));
+            System.out.println(segmentedIndex);
+        }
+        SearchableIndex searchIndex = segmentedIndex != null ? segmentedIndex : invertedIndex;
 
-        // output the index to a file for reference
-        p = Paths.get("../Results/step2_inverted_index.txt");
-        try {
-            OutputStream out = new BufferedOutputStream(
-                    Files.newOutputStream(p, CREATE, TRUNCATE_EXISTING));
-            String result = "Word\tdocFreq --> [ DocId, termFreq ]\n";
-            result += "-----------------------------------------------\n";
-            byte data[] = result.getBytes();
-            out.write(data, 0, data.length);
+        // the dictionary holds the stop words used to preprocess the queries
+        TermDictionary dictionary = searchIndex.getDictionary();
 
-            for(String word : vocabulary) {
-                HashMap<String, Integer> list = invertedIndex.getPostingsList(word);
-                result = word + " " + list.size() + " --> ";
-                for(String s : list.keySet()) {
-                    result += " [" + s + ", " + list.get(s) + "] ";
+        if (servePort >= 0) {
+            // the server keeps running (its threads keep the JVM alive) until the process is stopped
+            try {
+                int handlers = Math.max(threads, Runtime.getRuntime().availableProcessors());
+                InetAddress address = bindAddress == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(bindAddress);
+                SearchServer server = new SearchServer(searchIndex, address, servePort,
+                        QueryExecutors.newExecutor(handlers, virtualThreads));
+                server.setDynamicPruning(dynamicPruning);
+                if (cacheBytes > 0) {
+                    server.setResultCache(new ResultCache(cacheBytes));
                 }
-                result += "\n";
-                data= result.getBytes();
-                out.write(data, 0, data.length);
+                server.start();
+                System.out.println("Serving queries on http://" + address.getHostAddress() + ":" + server.getPort() + "/search?q=...");
+            } catch (IOException x) {
+                System.err.println(x);
             }
-        } catch (IOException x) {
-            System.err.println(x);
+            return;
         }
 
-        System.out.println("Normalizing the invertedIndex");
-        // creating index with normalized weights
-        invertedIndex.fillNormalizedWeightIndex();
-
-
         System.out.println("Parsing the queries...");
         // parse queries, queries is list of all queries, preprocessed
-        ArrayList<Query> queries = QueryParser.getQueries("../topics_MB1-49.txt", stopWords);
+        PipelineMetrics.Stage parseQueries = metrics.stage("parse_queries");
+        parseQueries.start();
+        ArrayList<Query> queries = QueryParser.getQueries("../topics_MB1-49.txt", dictionary);
+        parseQueries.stop();
+        parseQueries.setCounts(queries.size(), 0);
 
         System.out.println("Creating rank object...");
         // determine ranking of the queries
-        RetrieveRank rank = new RetrieveRank(invertedIndex, queries, documentLengths);
+        RetrieveRank rank = new RetrieveRank(searchIndex, queries);
+        rank.setDynamicPruning(dynamicPruning);
+        rank.setTimeCutoff(timeCutoff);
+        rank.setLatencyHistogram(metrics.getQueryLatency());
+        if (cacheBytes > 0) {
+            rank.setResultCache(new ResultCache(cacheBytes));
+        }
 
-        System.out.println("Computing scores");
+        System.out.println("Computing scores (" + similarity.getName() + ")");
         // this is where most of the work happens
-        // weights of inverted index are normalized
-        // query weights are normalized
-        // cosine score is computed
-        // results contains query -> [docID, score]
-        Map<Query, Map<String, Double>> results = rank.getRankedResults();
+        // weights of inverted index are normalized (cosine), or the document factors of the similarity applied
+        // query weights are normalized (cosine)
+        // score is computed with the similarity (cosine by default)
+        // results contains query -> [docId, score] for the topK best documents
+        Map<Query, RankedList> results;
+        PipelineMetrics.Stage score = metrics.stage("score");
+        score.start();
+        long start = System.nanoTime();
+        if (threads > 1 || virtualThreads) {
+            ExecutorService executor = QueryExecutors.newExecutor(threads, virtualThreads);
+            try {
+                results = rank.getRankedResults(topK, executor);
+            } catch (Exception x) {
+                System.err.println(x);
+                return;
+            } finally {
+                executor.shutdown();
+            }
+        } else {
+            results = rank.getRankedResults(topK);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        score.stop();
+        // the queries scored by the executor threads allocate there
+        score.addAllocatedBytes(rank.getWorkerAllocatedBytes());
+        score.setCounts(results.size(), rank.getPostingsScored());
+        System.out.println(String.format("Ranked %d queries in %.1f ms (%.0f queries/s)",
+                results.size(), seconds * 1000, results.size() / seconds));
+        System.out.println(String.format("Scored %d postings in %.1f ms (%.0f postings/s)",
+                rank.getPostingsScored(), rank.getScoringMillis(), rank.getPostingsPerSecond()));
+        if (dynamicPruning) {
+            System.out.println("Skipped " + rank.getPostingsSkipped() + " postings with dynamic pruning");
+        }
+        if (timeCutoff) {
+            System.out.println("Searched " + rank.getShardsSearched() + " time shards, skipped " + rank.getShardsSkipped());
+        }
+        if (rank.getResultCache() != null) {
+            System.out.println(rank.getResultCache());
+        }
+        if (invertedIndex != null && invertedIndex.getPostingsCache() != null) {
+            System.out.println(invertedIndex.getPostingsCache());
+        }
+        if (segmentedIndex != null) {
+            System.out.println(segmentedIndex);
+            System.out.println(segmentedIndex.getMergeScheduler());
+        }
 
         // output the query and doc scores to a file for reference
-        p = Paths.get("../Results/step3_retrieval_and_ranking.txt");
-        try {
-            OutputStream out = new BufferedOutputStream(
-                    Files.newOutputStream(p, CREATE, TRUNCATE_EXISTING));
-            
-            String result = "";
+        PipelineMetrics.Stage write = metrics.stage("write");
+        write.start();
+        writeRetrievalAndRanking(results, searchIndex);
+
+        // write the run file: for each query the topK documents ranked, as TREC run lines
+        // "Topic_ID Q0 DocID Rank Score Tag", the tag numbers the queries
+        String runFileName = "../Results/Trec_microblog11-results.txt" + (gzip ? ".gz" : "");
+        // the writer is read once the try block has closed it, so its counts include the last lines
+        TrecRunWriter written = null;
+        try (TrecRunWriter run = new TrecRunWriter(runFileName, gzip)) {
+            int tagValue = 0;
+            for (Query query : results.keySet()) {
+                tagValue++;
+                run.write(query.getId(), results.get(query), searchIndex, "myRun" + tagValue);
+            }
+            written = run;
+        } catch (IOException x) {
+            System.err.println(x);
+        }
+        write.stop();
+        if (written != null) {
+            write.setCounts(written.getLines(), 0);
+            System.out.println(written);
+        }
+
+        System.out.println(metrics);
+        if (metricsFileName != null) {
+            System.out.println("Writing the metrics to " + metricsFileName + " (" + metricsFormat + ")");
+            try {
+                metrics.write(metricsFileName, metricsFormat);
+            } catch (IOException x) {
+                System.err.println(x);
+            }
+        }
+    }
+
+    // adds the stages of the single pass over the data (read, tokenize, stem and index, timed
+    // by the preprocessor on every thread) after the preprocess stage of the pass, and the
+    // bytes its worker threads allocated to the preprocess stage
+    private static void addPreprocessStages(PipelineMetrics metrics, Prepro2 preprocessor, long documents, long postings) {
+        PipelineMetrics.Stage preprocess = metrics.stage("preprocess");
+        preprocess.addAllocatedBytes(preprocessor.getWorkerAllocatedBytes());
+        preprocess.setCounts(documents, postings);
+        long[] nanos = {preprocessor.getReadNanos(), preprocessor.getTokenizeNanos(),
+                preprocessor.getStemCache().getStemNanos(), preprocessor.getIndexNanos()};
+        String[] names = {"read", "tokenize", "stem", "index"};
+        for (int i = 0; i < names.length; i++) {
+            PipelineMetrics.Stage stage = metrics.stage(names[i]);
+            stage.addNanos(nanos[i]);
+            stage.setCounts(documents, postings);
+        }
+    }
+
+    // output the ranked documents and their scores of each query to a file for reference
+    private static void writeRetrievalAndRanking(Map<Query, RankedList> results, SearchableIndex index) {
+        Path p = Paths.get("../Results/step3_retrieval_and_ranking.txt");
+        try (OutputStream out = new BufferedOutputStream(
+                Files.newOutputStream(p, CREATE, TRUNCATE_EXISTING))) {
+            StringBuilder result = new StringBuilder();
             for(Query query : results.keySet()) {
-                result = query.getId() + " --> ";
-                Map<String, Double> matchedDocs = results.get(query);
-                for(String docID : matchedDocs.keySet()) {
-                    result += " [" + docID + ", " + matchedDocs.get(docID) + "] ";
+                result.setLength(0);
+                result.append(query.getId()).append(" --> ");
+                RankedList matchedDocs = results.get(query);
+                for(int i = 0; i < matchedDocs.size(); i++) {
+                    result.append(" [").append(index.getDocumentID(matchedDocs.getDocId(i)))
+                            .append(", ").append(matchedDocs.getScore(i)).append("] ");
                 }
-                result += "\n";
-                byte data[] = result.getBytes();
+                result.append('\n');
+                byte data[] = result.toString().getBytes();
                 out.write(data, 0, data.length);
             }
         } catch (IOException x) {
             System.err.println(x);
         }
+    }
 
+    // appends the lines of a data file to the index, `batch` lines (one segment) at a time
+    private static void appendTweets(SegmentedIndex index, String fileName, int batch) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(fileName), Charset.defaultCharset())) {
+            List<String> lines = new ArrayList<>();
+            String line = reader.readLine();
+            while (line != null) {
+                lines.add(line);
+                if (lines.size() == batch) {
+                    index.append(lines);
+                    lines.clear();
+                }
+                line = reader.readLine();
+            }
+            index.append(lines);
+        }
+    }
 
-        // display the results
-        DecimalFormat df3 = new DecimalFormat("#.###");
-        String lineToPrint = String.format("%-8s %-2s %-17s %-4s %-5s %-5s", "Topic_ID", "Q0", "DocID", "Rank", "Score", "Tag" );
-        // System.out.println(lineToPrint);
+    // output the vocabulary to a file for reference
+    private static void writeVocabulary(List<String> vocabulary) {
+        Path p = Paths.get("../Results/step1_vocabulary.txt");
+        try (OutputStream out = new BufferedOutputStream(
+                Files.newOutputStream(p, CREATE, TRUNCATE_EXISTING))) {
+            for(String word : vocabulary) {
+                word += "\n";
+                byte data[] = word.getBytes();
+                out.write(data, 0, data.length);
+            }
+        } catch (IOException x) {
+            System.err.println(x);
+        }
+    }
 
-        int tagValue = 0;
-        for (Query query : results.keySet()) {
-            tagValue++;
-            // for each document containing words from this query
-            // we only want the top 1000 documents
-            int count = 1;
-            for(String docID: results.get(query).keySet()) {
+    // output the index to a file for reference
+    private static void writeInvertedIndex(InvertedIndex invertedIndex) {
+        // take this line out if testing on full data set
+        // System.out.println(invertedIndex);
 
-                if (count >= 1000) {
-                    break;
-                }
-                String topic_id = query.getId();
-                String score = df3.format(results.get(query).get(docID));
-                String tag = "myRun" + tagValue;
-                lineToPrint = topic_id + " Q0 " + docID + " " + count + " " + score + " " + tag;
-                // lineToPrint = String.format("%-5s %-2s %-17s %-3d %-4s %-5s",
-                //         topic_id , "Q0", docID, count, score, tag );
-                // System.out.println(lineToPrint);
-                count++;
-
-
-                //preparing to store the line in a file
-                lineToPrint += "\n";
-                byte data[] = lineToPrint.getBytes();
-                p = Paths.get("../Results/Trec_microblog11-results.txt");
-
-                try (OutputStream out = new BufferedOutputStream(
-                        Files.newOutputStream(p, CREATE, APPEND))) {
-                    out.write(data,0, data.length);
-                } catch (IOException x) {
-                    System.err.println(x);
-                }
+        writeInvertedIndex(Collections.singletonList(invertedIndex));
+    }
+
+    // output the segments of an index to a file for reference, one after the other with their
+    // own header: a term has a line in every segment that has it, with the postings of that segment
+    private static void writeInvertedIndex(List<InvertedIndex> segments) {
+        Path p = Paths.get("../Results/step2_inverted_index.txt");
+        try (Writer out = Files.newBufferedWriter(p, Charset.defaultCharset())) {
+            // the terms are written one at a time, alphabetically as in the vocabulary
+            for (InvertedIndex segment : segments) {
+                new IndexExport().export(segment, out);
             }
+        } catch (IOException x) {
+            System.err.println(x);
+        }
+    }
+
+    // the terms of all the segments, in the order of the vocabulary of a single index
+    private static List<String> segmentsVocabulary(List<InvertedIndex> segments) {
+        Set<String> terms = new HashSet<>();
+        for (InvertedIndex segment : segments) {
+            terms.addAll(segment.getDictionary().getSortedTerms());
         }
+        List<String> vocabulary = new ArrayList<>(terms);
+        Collections.sort(vocabulary, String.CASE_INSENSITIVE_ORDER);
+        return vocabulary;
     }
 }
@@ -0,0 +1,135 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class MappedTokenizer {
+
+    // the mapped tokenizer reads the data file directly from a (memory mapped) byte buffer.
+    // It gives the same tokens as Prepro2.addLine without creating Strings for the lines and
+    // the words: urls (http followed by non blank characters) are skipped, the first field
+    // of a line is the docID, and the other fields (separated by spaces or tabs) are lower
+    // cased, stripped of non alphanumeric characters and dropped if they contain a digit.
+    // The letters of a word are looked up in a StemCache as a char run.
+    // The buffer is expected to be UTF-8 (bytes of multi-byte characters are not letters)
+
+    private StemCache stemCache;
+    private char[] word;
+    private int wordLength;
+    private boolean wordHasDigit;
+    private char[] docID;
+    private int docIDLength;
+    private int[] docTerms;
+    private int docTermCount;
+    private long tokenCount;
+
+    public MappedTokenizer(TermDictionary dictionary) {
+        stemCache = new StemCache(dictionary, Prepro2.STEM_CACHE_SIZE, true);
+        word = new char[64];
+        docID = new char[32];
+        docTerms = new int[64];
+    }
+
+    // tokenizes every line of the buffer (from its position to its limit) and adds the documents to the builder
+    public void tokenize(ByteBuffer buffer, IndexBuilder builder) {
+        int end = buffer.limit();
+        int i = buffer.position();
+        int field = 0;
+        while (i < end) {
+            byte c = buffer.get(i);
+            if (c == '\n' || c == '\r') {
+                // end of the line (\r\n gives an empty line, which has no document)
+                endField(field);
+                endLine(builder);
+                field = 0;
+                i++;
+                continue;
+            }
+            if (c == ' ' || c == '\t') {
+                endField(field);
+                field++;
+                i++;
+                continue;
+            }
+            if (c == 'h' && i + 4 < end && buffer.get(i + 1) == 't' && buffer.get(i + 2) == 't'
+                    && buffer.get(i + 3) == 'p' && !isBlank(buffer.get(i + 4))) {
+                // skip the url, up to the next blank character
+                i += 4;
+                while (i < end && !isBlank(buffer.get(i))) {
+                    i++;
+                }
+                continue;
+            }
+            if (field == 0) {
+                // only the digits of the docID are kept
+                if (c >= '0' && c <= '9') {
+                    if (docIDLength == docID.length) {
+                        docID = Arrays.copyOf(docID, docIDLength * 2);
+                    }
+                    docID[docIDLength++] = (char) c;
+                }
+            } else if (c >= 'a' && c <= 'z') {
+                append((char) c);
+            } else if (c >= 'A' && c <= 'Z') {
+                append((char) (c + ('a' - 'A')));
+            } else if (c >= '0' && c <= '9') {
+                wordHasDigit = true;
+            } else if (c == (byte) 0xC4 && i + 1 < end && buffer.get(i + 1) == (byte) 0xB0) {
+                // capital I with dot above, lower cased to i followed by a (stripped) combining dot
+                append('i');
+                i++;
+            } else if (c == (byte) 0xE2 && i + 2 < end && buffer.get(i + 1) == (byte) 0x84
+                    && buffer.get(i + 2) == (byte) 0xAA) {
+                // kelvin sign, lower cased to k
+                append('k');
+                i += 2;
+            }
+            i++;
+        }
+        endField(field);
+        endLine(builder);
+    }
+
+    // number of tokens added to documents so far
+    public long getTokenCount() {
+        return tokenCount;
+    }
+
+    public StemCache getStemCache() {
+        return stemCache;
+    }
+
+    // blank characters end a url (\s in the regular expression of Prepro2)
+    private static boolean isBlank(byte c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    private void append(char c) {
+        if (wordLength == word.length) {
+            word = Arrays.copyOf(word, wordLength * 2);
+        }
+        word[wordLength++] = c;
+    }
+
+    // stems the word of the field that just ended and adds it to the document
+    private void endField(int field) {
+        if (field > 0 && wordLength > 0 && !wordHasDigit) {
+            int termId = stemCache.lookup(word, wordLength);
+            if (termId != StemCache.STOP_WORD) {
+                if (docTermCount == docTerms.length) {
+                    docTerms = Arrays.copyOf(docTerms, docTermCount * 2);
+                }
+                docTerms[docTermCount++] = termId;
+                tokenCount++;
+            }
+        }
+        wordLength = 0;
+        wordHasDigit = false;
+    }
+
+    private void endLine(IndexBuilder builder) {
+        if (docTermCount > 0) {
+            builder.addDocument(new String(docID, 0, docIDLength), docTerms, docTermCount);
+        }
+        docIDLength = 0;
+        docTermCount = 0;
+    }
+}
@@ -0,0 +1,123 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class MergeScheduler {
+
+    // runs the merges of a SegmentedIndex on a background thread: when the index changes the
+    // scheduler is notified (mergeRequested), and the thread runs the merges chosen by the merge
+    // policy one at a time until the policy has none left. Queries keep running on the
+    // segments being merged, the merged segment replaces them once it is complete.
+    // It also counts the merges: documents and postings merged, and the time spent merging
+
+    private ExecutorService thread;
+    // a merge thread task is queued or running
+    private boolean running;
+    // the index changed since the merge thread last asked the policy for a merge
+    private boolean pending;
+    // set by close, no merge is started afterwards
+    private boolean closed;
+
+    private long merges;
+    private long mergedDocuments;
+    private long mergedPostings;
+    private long mergeNanos;
+
+    public MergeScheduler() {
+        thread = Executors.newSingleThreadExecutor(task -> {
+            Thread merger = new Thread(task, "segment-merger");
+            merger.setDaemon(true);
+            return merger;
+        });
+    }
+
+    // asks for the merges of the index to be checked, in the background
+    // (ignored once the scheduler is closed, the index then keeps its segments)
+    public synchronized void mergeRequested(SegmentedIndex index) {
+        if (closed) {
+            return;
+        }
+        pending = true;
+        if (!running) {
+            running = true;
+            thread.submit(() -> runMerges(index));
+        }
+    }
+
+    private void runMerges(SegmentedIndex index) {
+        try {
+            while (true) {
+                synchronized (this) {
+                    if (!pending) {
+                        running = false;
+                        notifyAll();
+                        return;
+                    }
+                    pending = false;
+                }
+                while (index.mergeNext()) {
+                    // merge until the policy has no merge left
+                }
+            }
+        } catch (Exception e) {
+            System.out.println("Error merging segments in MergeScheduler.java");
+            e.printStackTrace();
+            synchronized (this) {
+                running = false;
+                notifyAll();
+            }
+        }
+    }
+
+    // waits until no merge is running or queued
+    public synchronized void awaitMerges() throws InterruptedException {
+        while (running) {
+            wait();
+        }
+    }
+
+    // adds a completed merge to the counters
+    synchronized void addMerge(int documents, long postings, long nanos) {
+        merges++;
+        mergedDocuments += documents;
+        mergedPostings += postings;
+        mergeNanos += nanos;
+    }
+
+    // stops the merge thread, waiting for the merge in progress
+    public void close() throws InterruptedException {
+        synchronized (this) {
+            closed = true;
+        }
+        thread.shutdown();
+        thread.awaitTermination(1, TimeUnit.DAYS);
+    }
+
+    public synchronized long getMerges() {
+        return merges;
+    }
+
+    public synchronized long getMergedDocuments() {
+        return mergedDocuments;
+    }
+
+    // number of postings written by the merges
+    public synchronized long getMergedPostings() {
+        return mergedPostings;
+    }
+
+    public synchronized double getMergeMillis() {
+        return mergeNanos / 1e6;
+    }
+
+    // merge throughput, in postings written per second of merging
+    public synchronized double getMergedPostingsPerSecond() {
+        return mergeNanos == 0 ? 0 : mergedPostings * 1e9 / mergeNanos;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Merges: %d merges of %d documents (%d postings) in %.1f ms (%.0f postings/s)",
+                merges, mergedDocuments, mergedPostings, mergeNanos / 1e6, getMergedPostingsPerSecond());
+    }
+}
@@ -0,0 +1,221 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+public class PipelineMetrics {
+
+    // the time, allocation and throughput of each stage of a run (read, tokenize, stem, index,
+    // normalize, parse_queries, score, write), and the latency histogram of the queries.
+    // A stage is timed by start / stop (several times if it runs in several places), which also
+    // count the bytes allocated by the calling thread; the work a stage hands to other threads
+    // is added by the code running it (addNanos, addAllocatedBytes), e.g. the worker threads of
+    // Prepro2. The read, tokenize, stem and index stages happen in a single pass over the data
+    // (the preprocess stage): their times are measured inside the pass and summed over the
+    // worker threads, its wall time and allocation are the ones of the preprocess stage.
+    // The metrics are written as JSON or in the Prometheus text format
+
+    public static final String JSON = "json";
+    public static final String PROMETHEUS = "prometheus";
+
+    private Map<String, Stage> stages = new LinkedHashMap<>();
+    private LatencyHistogram queryLatency = new LatencyHistogram();
+
+    public static class Stage {
+        private String name;
+        private long nanos;
+        private long allocatedBytes;
+        private boolean allocationMeasured;
+        private long documents;
+        private long postings;
+        private long startNanos;
+        private long startBytes;
+
+        Stage(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void start() {
+            startBytes = threadAllocatedBytes();
+            startNanos = System.nanoTime();
+        }
+
+        public void stop() {
+            nanos += System.nanoTime() - startNanos;
+            addAllocatedBytes(threadAllocatedBytes() - startBytes);
+        }
+
+        // adds time spent in the stage, measured elsewhere
+        public void addNanos(long nanos) {
+            this.nanos += nanos;
+        }
+
+        // adds the bytes allocated for the stage by another thread
+        public void addAllocatedBytes(long bytes) {
+            allocatedBytes += Math.max(0, bytes);
+            allocationMeasured = true;
+        }
+
+        // sets the number of documents and postings the stage went through
+        public void setCounts(long documents, long postings) {
+            this.documents = documents;
+            this.postings = postings;
+        }
+
+        public double getMillis() {
+            return nanos / 1e6;
+        }
+
+        // the bytes allocated, -1 if they were not measured
+        public long getAllocatedBytes() {
+            return allocationMeasured ? allocatedBytes : -1;
+        }
+
+        public long getDocuments() {
+            return documents;
+        }
+
+        public long getPostings() {
+            return postings;
+        }
+
+        public double getDocumentsPerSecond() {
+            return nanos == 0 ? 0 : documents * 1e9 / nanos;
+        }
+
+        public double getPostingsPerSecond() {
+            return nanos == 0 ? 0 : postings * 1e9 / nanos;
+        }
+    }
+
+    // the stage of the given name, created when first used (stages are listed in that order)
+    public synchronized Stage stage(String name) {
+        return stages.computeIfAbsent(name, Stage::new);
+    }
+
+    public synchronized List<Stage> getStages() {
+        return new ArrayList<>(stages.values());
+    }
+
+    // the latencies of the queries (see RetrieveRank.setLatencyHistogram)
+    public LatencyHistogram getQueryLatency() {
+        return queryLatency;
+    }
+
+    // bytes allocated by the current thread since it started, 0 if the JVM doesn't count them
+    public static long threadAllocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return Math.max(0, ((com.sun.management.ThreadMXBean) threads).getCurrentThreadAllocatedBytes());
+        }
+        return 0;
+    }
+
+    public static boolean isFormat(String format) {
+        return format.equals(JSON) || format.equals(PROMETHEUS);
+    }
+
+    // writes the metrics to a file, in the given format
+    public void write(String fileName, String format) throws IOException {
+        try (Writer out = Files.newBufferedWriter(Paths.get(fileName), StandardCharsets.UTF_8)) {
+            if (format.equals(PROMETHEUS)) {
+                writePrometheus(out);
+            } else {
+                writeJson(out);
+            }
+        }
+    }
+
+    public void writeJson(Writer out) throws IOException {
+        out.write("{\n  \"stages\": [");
+        String separator = "\n";
+        for (Stage stage : getStages()) {
+            out.write(separator);
+            separator = ",\n";
+            out.write(String.format(Locale.ROOT,
+                    "    {\"stage\": \"%s\", \"time_ms\": %.3f, \"allocated_bytes\": %d, \"documents\": %d, "
+                            + "\"postings\": %d, \"documents_per_second\": %.1f, \"postings_per_second\": %.1f}",
+                    stage.getName(), stage.getMillis(), stage.getAllocatedBytes(), stage.getDocuments(),
+                    stage.getPostings(), stage.getDocumentsPerSecond(), stage.getPostingsPerSecond()));
+        }
+        out.write("\n  ],\n");
+        out.write(String.format(Locale.ROOT,
+                "  \"query_latency\": {\"count\": %d, \"mean_ms\": %.3f, \"p50_ms\": %.3f, \"p90_ms\": %.3f, "
+                        + "\"p99_ms\": %.3f, \"max_ms\": %.3f}\n}\n",
+                queryLatency.getCount(), queryLatency.getMeanMillis(), queryLatency.getPercentileMillis(0.5),
+                queryLatency.getPercentileMillis(0.9), queryLatency.getPercentileMillis(0.99),
+                queryLatency.getMaxMillis()));
+    }
+
+    public void writePrometheus(Writer out) throws IOException {
+        List<Stage> stages = getStages();
+        writeGauge(out, "microblog_stage_seconds", "Time spent in the stage (summed over the worker threads for read, tokenize, stem and index)",
+                stages, stage -> stage.getMillis() / 1e3);
+        List<Stage> measured = new ArrayList<>();
+        for (Stage stage : stages) {
+            if (stage.getAllocatedBytes() >= 0) {
+                measured.add(stage);
+            }
+        }
+        writeGauge(out, "microblog_stage_allocated_bytes", "Bytes allocated by the stage",
+                measured, stage -> stage.getAllocatedBytes());
+        writeGauge(out, "microblog_stage_documents", "Documents processed by the stage (queries for parse_queries and score, lines for write)",
+                stages, stage -> stage.getDocuments());
+        writeGauge(out, "microblog_stage_postings", "Postings processed by the stage",
+                stages, stage -> stage.getPostings());
+        writeGauge(out, "microblog_stage_documents_per_second", "Documents processed per second of the stage",
+                stages, Stage::getDocumentsPerSecond);
+        writeGauge(out, "microblog_stage_postings_per_second", "Postings processed per second of the stage",
+                stages, Stage::getPostingsPerSecond);
+
+        out.write("# HELP microblog_query_latency_seconds Latency of the queries.\n");
+        out.write("# TYPE microblog_query_latency_seconds summary\n");
+        for (double q : new double[] {0.5, 0.9, 0.99}) {
+            out.write(String.format(Locale.ROOT, "microblog_query_latency_seconds{quantile=\"%s\"} %.9f\n",
+                    Double.toString(q), queryLatency.getPercentileMillis(q) / 1e3));
+        }
+        out.write(String.format(Locale.ROOT, "microblog_query_latency_seconds_sum %.9f\n", queryLatency.getSumSeconds()));
+        out.write("microblog_query_latency_seconds_count " + queryLatency.getCount() + "\n");
+    }
+
+    private interface StageValue {
+        double get(Stage stage);
+    }
+
+    private static void writeGauge(Writer out, String name, String help, List<Stage> stages, StageValue value) throws IOException {
+        out.write("# HELP " + name + " " + help + ".\n");
+        out.write("# TYPE " + name + " gauge\n");
+        for (Stage stage : stages) {
+            out.write(String.format(Locale.ROOT, "%s{stage=\"%s\"} %s\n", name, stage.getName(), formatValue(value.get(stage))));
+        }
+    }
+
+    private static String formatValue(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value) : String.format(Locale.ROOT, "%.6f", value);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder(String.format("%-14s %12s %14s %10s %10s %14s %14s%n",
+                "stage", "ms", "allocated MB", "documents", "postings", "documents/s", "postings/s"));
+        for (Stage stage : getStages()) {
+            long bytes = stage.getAllocatedBytes();
+            result.append(String.format("%-14s %12.1f %14s %10d %10d %14.0f %14.0f%n",
+                    stage.getName(), stage.getMillis(), bytes < 0 ? "-" : String.format("%.1f", bytes / 1e6),
+                    stage.getDocuments(), stage.getPostings(), stage.getDocumentsPerSecond(), stage.getPostingsPerSecond()));
+        }
+        result.append("query latency: ").append(queryLatency);
+        return result.toString();
+    }
+}
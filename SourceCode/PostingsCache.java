@@ -0,0 +1,161 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class PostingsCache {
+
+    // cache of decoded postings lists for an index opened from an index file, so that the lists
+    // of hot query terms are not decoded from the file on every query.
+    // The cache holds at most maxBytes of postings (8 bytes per posting plus the list overhead)
+    // and evicts the least recently used lists. Admission favors frequent terms: the accesses
+    // of every term are counted, and a list that doesn't fit is only cached if its term was
+    // accessed more often than each of the lists it would evict (as in TinyLFU). The counts are
+    // halved every AGING_PERIOD accesses so that terms that are no longer queried fade out.
+    // The methods are synchronized, the cache can be shared by scoring threads: put compares the
+    // term with the lists it would evict and evicts them in one step, so a list is never cached
+    // at the expense of lists more frequent than its term, whatever the other threads put meanwhile
+
+    private static final long LIST_OVERHEAD = 80;
+    private static final int AGING_PERIOD = 1 << 16;
+
+    private long maxBytes;
+    private long bytes;
+    private LinkedHashMap<Integer, PostingsList> lists;
+    private int[] frequencies;
+    private int accesses;
+
+    private long hits;
+    private long misses;
+    private long admissions;
+    private long rejections;
+    private long evictions;
+
+    public PostingsCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        // access order: iteration starts at the least recently used list
+        lists = new LinkedHashMap<>(16, 0.75f, true);
+        frequencies = new int[1024];
+    }
+
+    // estimated heap size of a decoded list
+    static long size(int postings) {
+        return LIST_OVERHEAD + 8L * postings;
+    }
+
+    // counts an access to the postings of a term and returns them if they are cached, or null
+    public synchronized PostingsList get(int termId) {
+        if (termId >= frequencies.length) {
+            frequencies = Arrays.copyOf(frequencies, Math.max(termId + 1, frequencies.length * 2));
+        }
+        frequencies[termId]++;
+        if (++accesses == AGING_PERIOD) {
+            for (int t = 0; t < frequencies.length; t++) {
+                frequencies[t] >>= 1;
+            }
+            accesses = 0;
+        }
+        PostingsList list = lists.get(termId);
+        if (list == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return list;
+    }
+
+    // true if the postings of a term (of the given document frequency) are worth decoding to be
+    // cached, as put would cache them now: other threads may change the cache before put is called
+    public synchronized boolean admit(int termId, int postings) {
+        if (!admits(termId, size(postings))) {
+            rejections++;
+            return false;
+        }
+        return true;
+    }
+
+    // caches the decoded postings of a term if they fit in the free space, or if their term is
+    // more frequent than each of the least recently used lists they would evict, which are then
+    // evicted. Returns false if the postings are not cached
+    public synchronized boolean put(int termId, PostingsList list) {
+        if (lists.containsKey(termId)) {
+            return true;
+        }
+        long size = size(list.size());
+        if (!admits(termId, size)) {
+            rejections++;
+            return false;
+        }
+        Iterator<Map.Entry<Integer, PostingsList>> eldest = lists.entrySet().iterator();
+        while (bytes + size > maxBytes && eldest.hasNext()) {
+            bytes -= size(eldest.next().getValue().size());
+            eldest.remove();
+            evictions++;
+        }
+        lists.put(termId, list);
+        bytes += size;
+        admissions++;
+        return true;
+    }
+
+    // the TinyLFU admission of a list of the given size: true if it fits in the free space, or
+    // if its term is more frequent than each of the lists it would evict (in LRU order)
+    private boolean admits(int termId, long size) {
+        if (size > maxBytes) {
+            return false;
+        }
+        int frequency = termId < frequencies.length ? frequencies[termId] : 0;
+        long free = maxBytes - bytes;
+        Iterator<Map.Entry<Integer, PostingsList>> eldest = lists.entrySet().iterator();
+        while (free < size && eldest.hasNext()) {
+            Map.Entry<Integer, PostingsList> victim = eldest.next();
+            if (frequencies[victim.getKey()] >= frequency) {
+                return false;
+            }
+            free += size(victim.getValue().size());
+        }
+        return true;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    // number of lists decoded and cached
+    public synchronized long getAdmissions() {
+        return admissions;
+    }
+
+    // number of lists left uncached because their term was less frequent than the lists in the cache
+    public synchronized long getRejections() {
+        return rejections;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized int size() {
+        return lists.size();
+    }
+
+    // estimated bytes used by the cached lists
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Postings cache: %d lists, %d bytes of %d, %d hits, %d misses (hit rate %.1f%%), %d admissions, %d rejections, %d evictions",
+                lists.size(), bytes, maxBytes, hits, misses, 100 * getHitRate(), admissions, rejections, evictions);
+    }
+}
@@ -0,0 +1,53 @@
+import java.nio.ByteBuffer;
+
+public interface PostingsCodec {
+
+    // a postings codec encodes a postings list (docIds and term frequencies) into bytes,
+    // and gives cursors decoding those bytes while iterating over them.
+    // The codec of an index file is stored in its header (see IndexFile)
+
+    // the ID written to index files
+    int getId();
+
+    // the name used on the command line (--codec=NAME)
+    String getName();
+
+    // encodes the docIds and term frequencies of the list, in blocks of PostingsList.BLOCK_SIZE
+    // postings whose headers are the skip data of the list
+    byte[] encode(PostingsList list);
+
+    // a cursor over `size` postings encoded at `offset` in the buffer, with the block-max data of
+    // its blocks (see PostingsList.getBlockMaxNormalizedFrequency, null if it is not known).
+    // The cursor only uses absolute gets so several cursors can share the buffer
+    PostingsCursor cursor(ByteBuffer buffer, int offset, int size, float[] blockMaxNormalizedFrequencies);
+
+    // a cursor without block-max data
+    default PostingsCursor cursor(ByteBuffer buffer, int offset, int size) {
+        return cursor(buffer, offset, size, null);
+    }
+
+    // the codecs that can be used to write index files
+    static PostingsCodec[] all() {
+        return new PostingsCodec[] { new VByteCodec(), new BlockCodec() };
+    }
+
+    // returns the codec with the given ID, or null
+    static PostingsCodec forId(int id) {
+        for (PostingsCodec codec : all()) {
+            if (codec.getId() == id) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    // returns the codec with the given name, or null
+    static PostingsCodec forName(String name) {
+        for (PostingsCodec codec : all()) {
+            if (codec.getName().equals(name)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,43 @@
+public interface PostingsCursor {
+
+    // a postings cursor iterates over the postings of one term in increasing docId order,
+    // encoded postings are decoded while iterating
+
+    // returned by nextDoc once the cursor is past the last posting
+    int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    // moves to the next posting and returns its docId, or NO_MORE_DOCS
+    int nextDoc();
+
+    // docId of the current posting, -1 before the first call to nextDoc
+    int docId();
+
+    // term frequency of the current posting
+    int termFrequency();
+
+    // number of postings in the list (the document frequency of the term)
+    int size();
+
+    // moves to the first posting with a docId greater than or equal to target and returns
+    // its docId, or NO_MORE_DOCS; the cursor doesn't move if it is already there.
+    // The default scans the postings, cursors with skip data override it
+    default int advance(int target) {
+        int doc = docId();
+        while (doc < target) {
+            doc = nextDoc();
+        }
+        return doc;
+    }
+
+    // skip data: the last docId of the block of postings holding the current posting, so a
+    // posting with a docId up to it is in the current block (NO_MORE_DOCS if there is no block metadata)
+    default int blockLastDocId() {
+        return NO_MORE_DOCS;
+    }
+
+    // block-max data: the largest normalized term frequency tf / norm of the postings in the block
+    // of the current posting (times the idf it bounds their weights), +infinity if it is not known
+    default float blockMaxNormalizedFrequency() {
+        return Float.POSITIVE_INFINITY;
+    }
+}
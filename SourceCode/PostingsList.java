@@ -0,0 +1,168 @@
+import java.util.Arrays;
+
+public class PostingsList {
+
+    // a postings list holds the documents containing one term as parallel primitive arrays:
+    // docIds (sorted ascending) and the term frequency in each document.
+    // The postings are also seen as blocks of BLOCK_SIZE postings, with the largest normalized
+    // term frequency tf / norm of every block (block-max metadata, set by InvertedIndex.computeDocumentNorms)
+
+    private static final int INITIAL_CAPACITY = 4;
+    static final int BLOCK_SIZE = 128;
+
+    private int[] docIds;
+    private int[] termFrequencies;
+    private int size;
+    // null until set, and dropped when postings are added
+    private float[] blockMaxNormalizedFrequencies;
+
+    public PostingsList() {
+        docIds = new int[INITIAL_CAPACITY];
+        termFrequencies = new int[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    // a postings list over the given arrays (docIds sorted ascending), used when reading an index file
+    PostingsList(int[] docIds, int[] termFrequencies) {
+        this.docIds = docIds;
+        this.termFrequencies = termFrequencies;
+        size = docIds.length;
+    }
+
+    // a postings list over the postings of another one, without its block-max data: the
+    // arrays are shared, so no postings may be added to either list
+    PostingsList(PostingsList list) {
+        docIds = list.docIds;
+        termFrequencies = list.termFrequencies;
+        size = list.size;
+    }
+
+    // adds one occurrence of the term in the document
+    // returns true if this is a new document for the term
+    public boolean addOccurrence(int docId) {
+        return add(docId, 1);
+    }
+
+    // adds termFrequency occurrences of the term in the document
+    // returns true if this is a new document for the term
+    public boolean add(int docId, int termFrequency) {
+        blockMaxNormalizedFrequencies = null;
+        // documents are normally added in increasing order, so check the end of the list first
+        if (size > 0 && docIds[size - 1] == docId) {
+            termFrequencies[size - 1] += termFrequency;
+            return false;
+        }
+        if (size == 0 || docIds[size - 1] < docId) {
+            append(docId, termFrequency);
+            return true;
+        }
+        int position = Arrays.binarySearch(docIds, 0, size, docId);
+        if (position >= 0) {
+            termFrequencies[position] += termFrequency;
+            return false;
+        }
+        // insert the document at its sorted position
+        position = -position - 1;
+        ensureCapacity(size + 1);
+        System.arraycopy(docIds, position, docIds, position + 1, size - position);
+        System.arraycopy(termFrequencies, position, termFrequencies, position + 1, size - position);
+        docIds[position] = docId;
+        termFrequencies[position] = termFrequency;
+        size++;
+        return true;
+    }
+
+    // appends a posting, docId must be greater than the last docId in the list
+    public void append(int docId, int termFrequency) {
+        blockMaxNormalizedFrequencies = null;
+        ensureCapacity(size + 1);
+        docIds[size] = docId;
+        termFrequencies[size] = termFrequency;
+        size++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > docIds.length) {
+            int newCapacity = Math.max(capacity, docIds.length + (docIds.length >> 1));
+            docIds = Arrays.copyOf(docIds, newCapacity);
+            termFrequencies = Arrays.copyOf(termFrequencies, newCapacity);
+        }
+    }
+
+    // releases the unused capacity at the end of the arrays
+    public void trim() {
+        if (docIds.length > size) {
+            docIds = Arrays.copyOf(docIds, size);
+            termFrequencies = Arrays.copyOf(termFrequencies, size);
+        }
+    }
+
+    // number of documents in the list (the document frequency of the term)
+    public int size() {
+        return size;
+    }
+
+    // length of the backing arrays, used for memory reporting
+    public int capacity() {
+        return docIds.length;
+    }
+
+    public int getDocId(int position) {
+        return docIds[position];
+    }
+
+    public int getTermFrequency(int position) {
+        return termFrequencies[position];
+    }
+
+    // returns a cursor iterating over the list
+    public PostingsCursor cursor() {
+        return new PostingsListCursor(this);
+    }
+
+    // returns the position of the document in the list, or a negative value if it is not there
+    public int find(int docId) {
+        return Arrays.binarySearch(docIds, 0, size, docId);
+    }
+
+    // returns the position of the first docId greater than or equal to docId at or after the
+    // position from, or size if there is none. The search gallops from `from` (1, 2, 4, ...
+    // postings ahead) before a binary search, so short moves cost little and long moves
+    // cost O(log distance)
+    public int seek(int from, int docId) {
+        if (from >= size || docIds[from] >= docId) {
+            return Math.min(from, size);
+        }
+        int low = from;
+        int step = 1;
+        int high = from;
+        while (high < size && docIds[high] < docId) {
+            low = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        high = Math.min(high, size);
+        int position = Arrays.binarySearch(docIds, low, high, docId);
+        return position >= 0 ? position : -position - 1;
+    }
+
+    // number of blocks of BLOCK_SIZE postings
+    public int blockCount() {
+        return (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    // last docId of a block
+    public int getBlockLastDocId(int block) {
+        return docIds[Math.min((block + 1) * BLOCK_SIZE, size) - 1];
+    }
+
+    // largest normalized term frequency of a block, or +infinity if the block-max data is not set
+    public float getBlockMaxNormalizedFrequency(int block) {
+        return blockMaxNormalizedFrequencies == null ? Float.POSITIVE_INFINITY : blockMaxNormalizedFrequencies[block];
+    }
+
+    // sets the largest normalized term frequency of every block (blockCount values)
+    void setBlockMaxNormalizedFrequencies(float[] blockMaxNormalizedFrequencies) {
+        this.blockMaxNormalizedFrequencies = blockMaxNormalizedFrequencies;
+    }
+}
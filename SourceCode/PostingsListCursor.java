@@ -0,0 +1,62 @@
+public class PostingsListCursor implements PostingsCursor {
+
+    // cursor over an in-memory PostingsList
+
+    private PostingsList list;
+    private int position;
+
+    public PostingsListCursor(PostingsList list) {
+        this.list = list;
+        position = -1;
+    }
+
+    @Override
+    public int nextDoc() {
+        position++;
+        return docId();
+    }
+
+    @Override
+    public int docId() {
+        if (position < 0) {
+            return -1;
+        }
+        return position < list.size() ? list.getDocId(position) : NO_MORE_DOCS;
+    }
+
+    @Override
+    public int termFrequency() {
+        return list.getTermFrequency(position);
+    }
+
+    @Override
+    public int size() {
+        return list.size();
+    }
+
+    @Override
+    public int advance(int target) {
+        int current = docId();
+        if (current >= target) {
+            return current;
+        }
+        position = list.seek(position + 1, target);
+        return docId();
+    }
+
+    @Override
+    public int blockLastDocId() {
+        if (position < 0 || position >= list.size()) {
+            return NO_MORE_DOCS;
+        }
+        return list.getBlockLastDocId(position / PostingsList.BLOCK_SIZE);
+    }
+
+    @Override
+    public float blockMaxNormalizedFrequency() {
+        if (position < 0 || position >= list.size()) {
+            return Float.POSITIVE_INFINITY;
+        }
+        return list.getBlockMaxNormalizedFrequency(position / PostingsList.BLOCK_SIZE);
+    }
+}
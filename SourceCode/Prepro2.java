@@ -1,100 +1,316 @@
 import java.io.BufferedReader;
 import java.io.FileReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 
 public class Prepro2 {
 
-	private List<String> stopwordsList;
-	private List<List<String>> corpus;
-	private List<String> vocabulary;
+	private TermDictionary dictionary;
+	private StemCache stemCache; // stems the words, skipping the stemmer for words seen before
+	private int[] docTerms; // term IDs of the tokens of the document being read
+	private boolean memoryMapped; // read the data file through a MappedTokenizer
+    // time spent reading, tokenizing and indexing (summed over the ingestion threads, the time
+    // spent stemming is counted by the stem caches), and bytes allocated by the worker threads
+    private long readNanos;
+    private long tokenizeNanos;
+    private long indexNanos;
+    private long workerAllocatedBytes;
+
+    // the data file is split in this many chunks per worker, so that workers finishing
+    // early can pick up more work
+    private static final int CHUNKS_PER_WORKER = 4;
+    // chunks are mapped (or read) at once, so they must stay well below 2GB
+    private static final long MAX_CHUNK_SIZE = 1L << 30;
+    // number of surface forms kept in the stem cache of each preprocessor
+    static final int STEM_CACHE_SIZE = 1 << 16;
 
     public Prepro2() {
-        stopwordsList = new ArrayList<>();
-        corpus = new ArrayList<List<String>>();
-        vocabulary = new ArrayList<>();
+        this(new TermDictionary());
+    }
+
+    // a preprocessor filling the given dictionary, each ingestion thread has its own
+    // preprocessor because the Stemmer (and the stem cache) are not thread safe
+    Prepro2(TermDictionary dictionary) {
+        this.dictionary = dictionary;
+        stemCache = new StemCache(dictionary, STEM_CACHE_SIZE, true);
+        docTerms = new int[64];
     }
 
-    public List<String> getVocabulary(String stopWordsFile, String dataFile)
+    // reads the stop words and the data file, and builds the inverted index in a single pass:
+    // every document is tokenized, stemmed and added to the index as soon as it is read
+    public InvertedIndex buildIndex(String stopWordsFile, String dataFile)
 	{
 		//Create stopwordsList
         try {
-            Stemmer myStemmer = new Stemmer();
-            FileReader file2 = new FileReader(stopWordsFile);
-            BufferedReader reader2 = new BufferedReader(file2);
-            String stopword = reader2.readLine();
-            while (stopword != null) {
-                char[] toStem = stopword.toCharArray();
-                myStemmer.add(toStem, toStem.length);
-                myStemmer.stem();
-                String stemmed = myStemmer.toString();
-                stopwordsList.add(stemmed);
-                stopword = reader2.readLine();
-            }
-            reader2.close();
-            //Create vocabulary from the documents words
+            dictionary.loadStopWords(stopWordsFile, new Stemmer());
+            IndexBuilder builder = new IndexBuilder(dictionary);
+            long start = System.nanoTime();
+            long stemStart = stemCache.getStemNanos();
+            //Create vocabulary and postings from the documents words
             FileReader file = new FileReader(dataFile);
             BufferedReader reader = new BufferedReader(file);
+            long read = 0;
+            long readStart = System.nanoTime();
             String line = reader.readLine();
+            read += System.nanoTime() - readStart;
             while (line != null) {
-                line = line.replaceAll("http\\S+", "");
-                // replace the tabs with spaces
-                line = line.replaceAll("\t", " ");
-                String[] tempTokens = line.split(" ");
-                List<String> tempDoc = new ArrayList<String>();
-                tempDoc.add(tempTokens[0].replaceAll("[^0-9]","")); //adding the docID
-
-
-                //now filtering and stemming the words:
-                for (int x = 1; x < tempTokens.length; x++) {
-                    String tempValue = tempTokens[x].toLowerCase();
-                    //removing non alphanumeric char
-                    tempValue = tempValue.replaceAll("[^A-Za-z0-9]", "");
-                    //checking if numeric char in the string: if yes, discarded
-                    if (tempValue == tempValue.replaceAll("[^a-zA-Z]", "")) {
-                        char[] toStem = tempValue.toCharArray();
-                        myStemmer.add(toStem, toStem.length);
-                        myStemmer.stem();
-                        String stemmed = myStemmer.toString();
-
-                        if (!stopwordsList.contains(stemmed) && stemmed != "") {
-                            tempDoc.add(stemmed);//we store all the tokens contained in a doc (with duplicates, to get the freq afer)
-                            if (!vocabulary.contains(stemmed)) {
-                                vocabulary.add(stemmed);//no duplicate in vocab
-                            }
-                        }
-                    }
-                }
-                corpus.add(tempDoc);
+                addLine(line, builder);
+                readStart = System.nanoTime();
                 line = reader.readLine();
+                read += System.nanoTime() - readStart;
             }
-            vocabulary.remove("");
-            Collections.sort(vocabulary, String.CASE_INSENSITIVE_ORDER);
             reader.close();
-            return (vocabulary);
+            long buildStart = System.nanoTime();
+            InvertedIndex index = builder.build();
+            long end = System.nanoTime();
+            addTimes(end - start, read, stemCache.getStemNanos() - stemStart, builder.getNanos() + end - buildStart, 0);
+            return index;
         }catch (Exception e) {
             System.out.println("Error reading in Prepro2.java");
             e.printStackTrace();
         }
         return  null;
 	}
-	public List<String> getStopWordList()
-	{return(stopwordsList);
-	}
-	public List<List<String>> getCorpus()  {
-		return(corpus);
-	}
 
-    public HashMap<String,Integer> getDocLength(){
-        HashMap<String,Integer> docLength = new HashMap<>();
-        // for each doc in the corpus, we add its ID mapping to its length in the docLength structure
-        for(List<String> doc : corpus) {
-            docLength.put(doc.get(0), doc.size());
+    // when set, the data file is memory mapped and tokenized by a MappedTokenizer
+    // instead of being read line by line into Strings
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
+    // same as buildIndex, but the data file is split in chunks that are tokenized and stemmed
+    // by `workers` threads, each chunk gives a partial index and the partial indexes are merged
+    // in file order, so the result is identical to the serial buildIndex
+    public InvertedIndex buildIndex(String stopWordsFile, String dataFile, int workers)
+    {
+        if (workers <= 1 && !memoryMapped) {
+            return buildIndex(stopWordsFile, dataFile);
+        }
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, workers));
+        try (FileChannel channel = FileChannel.open(Paths.get(dataFile))) {
+            dictionary.loadStopWords(stopWordsFile, new Stemmer());
+            List<Future<InvertedIndex>> partials = submitChunks(channel, workers, pool);
+
+            // merge the partial indexes in file order
+            InvertedIndex index = new IndexBuilder(dictionary).build();
+            long mergeNanos = 0;
+            for (Future<InvertedIndex> partial : partials) {
+                InvertedIndex chunk = partial.get();
+                long start = System.nanoTime();
+                index.merge(chunk);
+                mergeNanos += System.nanoTime() - start;
+            }
+            long start = System.nanoTime();
+            index.trim();
+            mergeNanos += System.nanoTime() - start;
+            addTimes(mergeNanos, 0, 0, mergeNanos, 0);
+            return index;
+        } catch (Exception e) {
+            System.out.println("Error reading in Prepro2.java");
+            e.printStackTrace();
+        } finally {
+            pool.shutdown();
         }
-        return docLength;
+        return null;
     }
-}
 
+    // same as buildIndex with workers, but the partial indexes of the chunks are returned in
+    // file order instead of being merged, as the segments of a SegmentedIndex (bulk load).
+    // Their norms are not computed. The vocabulary of this preprocessor stays empty
+    public List<InvertedIndex> buildSegments(String stopWordsFile, String dataFile, int workers)
+    {
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, workers));
+        try (FileChannel channel = FileChannel.open(Paths.get(dataFile))) {
+            dictionary.loadStopWords(stopWordsFile, new Stemmer());
+            List<InvertedIndex> segments = new ArrayList<>();
+            for (Future<InvertedIndex> partial : submitChunks(channel, workers, pool)) {
+                InvertedIndex segment = partial.get();
+                if (segment.getDocumentCount() > 0) {
+                    segments.add(segment);
+                }
+            }
+            return segments;
+        } catch (Exception e) {
+            System.out.println("Error reading in Prepro2.java");
+            e.printStackTrace();
+        } finally {
+            pool.shutdown();
+        }
+        return null;
+    }
+
+    // splits the data file in chunks and submits their indexing to the pool,
+    // returns the partial indexes of the chunks in file order
+    private List<Future<InvertedIndex>> submitChunks(FileChannel channel, int workers, ForkJoinPool pool) throws IOException {
+        long parts = Math.max(workers * CHUNKS_PER_WORKER, channel.size() / MAX_CHUNK_SIZE + 1);
+        long[] bounds = splitOnLines(channel, (int) parts);
+
+        List<Future<InvertedIndex>> partials = new ArrayList<>();
+        for (int c = 0; c + 1 < bounds.length; c++) {
+            long start = bounds[c];
+            long end = bounds[c + 1];
+            partials.add(pool.submit(() -> indexChunk(channel, start, end)));
+        }
+        return partials;
+    }
+
+    // tokenizes the lines between the byte offsets start and end into a partial index
+    private InvertedIndex indexChunk(FileChannel channel, long start, long end) throws IOException {
+        long chunkStart = System.nanoTime();
+        long allocatedBytes = PipelineMetrics.threadAllocatedBytes();
+        if (memoryMapped) {
+            TermDictionary chunkDictionary = new TermDictionary(dictionary.getStopWords());
+            IndexBuilder builder = new IndexBuilder(chunkDictionary);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            // the pages are read while they are tokenized, that time is counted as tokenizing
+            long read = System.nanoTime() - chunkStart;
+            MappedTokenizer tokenizer = new MappedTokenizer(chunkDictionary);
+            tokenizer.tokenize(buffer, builder);
+            stemCache.addCounts(tokenizer.getStemCache());
+            long buildStart = System.nanoTime();
+            InvertedIndex partial = builder.build();
+            long chunkEnd = System.nanoTime();
+            addTimes(chunkEnd - chunkStart, read, tokenizer.getStemCache().getStemNanos(),
+                    builder.getNanos() + chunkEnd - buildStart, PipelineMetrics.threadAllocatedBytes() - allocatedBytes);
+            return partial;
+        }
+        ByteBuffer bytes = ByteBuffer.allocate((int) (end - start));
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes, start + bytes.position()) < 0) {
+                break;
+            }
+        }
+        String text = new String(bytes.array(), 0, bytes.position(), Charset.defaultCharset());
+
+        Prepro2 worker = new Prepro2(new TermDictionary(dictionary.getStopWords()));
+        IndexBuilder builder = new IndexBuilder(worker.getDictionary());
+        BufferedReader reader = new BufferedReader(new StringReader(text));
+        long read = System.nanoTime() - chunkStart;
+        long readStart = System.nanoTime();
+        String line = reader.readLine();
+        read += System.nanoTime() - readStart;
+        while (line != null) {
+            worker.addLine(line, builder);
+            readStart = System.nanoTime();
+            line = reader.readLine();
+            read += System.nanoTime() - readStart;
+        }
+        stemCache.addCounts(worker.getStemCache());
+        long buildStart = System.nanoTime();
+        InvertedIndex partial = builder.build();
+        long chunkEnd = System.nanoTime();
+        addTimes(chunkEnd - chunkStart, read, worker.getStemCache().getStemNanos(),
+                builder.getNanos() + chunkEnd - buildStart, PipelineMetrics.threadAllocatedBytes() - allocatedBytes);
+        return partial;
+    }
+
+    // adds the times of a pass over (part of) the data: `total` nanoseconds, of which `read`
+    // reading, `stem` stemming and `index` indexing, the rest is tokenizing; and the bytes
+    // allocated by a worker thread
+    private synchronized void addTimes(long total, long read, long stem, long index, long allocatedBytes) {
+        readNanos += read;
+        indexNanos += index;
+        tokenizeNanos += Math.max(0, total - read - stem - index);
+        workerAllocatedBytes += Math.max(0, allocatedBytes);
+    }
+
+    // time spent reading the data file (summed over the ingestion threads)
+    public synchronized long getReadNanos() {
+        return readNanos;
+    }
+
+    // time spent tokenizing the lines, the stem cache lookups included but not the stemming
+    // itself (see StemCache.getStemNanos)
+    public synchronized long getTokenizeNanos() {
+        return tokenizeNanos;
+    }
+
+    // time spent adding the documents to the index, and merging the partial indexes
+    public synchronized long getIndexNanos() {
+        return indexNanos;
+    }
+
+    // bytes allocated by the worker threads (the calling thread is not counted)
+    public synchronized long getWorkerAllocatedBytes() {
+        return workerAllocatedBytes;
+    }
+
+    // splits the file in about `parts` byte ranges that start at the beginning of a line
+    // returns the offsets of the ranges: range i is [bounds[i], bounds[i + 1])
+    static long[] splitOnLines(FileChannel channel, int parts) throws IOException {
+        long size = channel.size();
+        long[] bounds = new long[parts + 1];
+        int count = 1;
+        ByteBuffer one = ByteBuffer.allocate(1);
+        for (int i = 1; i < parts; i++) {
+            long offset = Math.max(size * i / parts, bounds[count - 1]);
+            // move forward to the first byte after the next new line
+            while (offset < size) {
+                one.clear();
+                channel.read(one, offset++);
+                if (one.get(0) == '\n') {
+                    break;
+                }
+            }
+            if (offset > bounds[count - 1] && offset < size) {
+                bounds[count++] = offset;
+            }
+        }
+        bounds[count++] = size;
+        return Arrays.copyOf(bounds, count);
+    }
+
+    // tokenizes one line of the data file (docID, tab, tweet text) and adds the document to the builder
+    public void addLine(String line, IndexBuilder builder) {
+        line = line.replaceAll("http\\S+", "");
+        // replace the tabs with spaces
+        line = line.replaceAll("\t", " ");
+        String[] tempTokens = line.split(" ");
+        String docID = tempTokens[0].replaceAll("[^0-9]",""); //the docID
+        int count = 0;
+
+        //now filtering and stemming the words:
+        for (int x = 1; x < tempTokens.length; x++) {
+            String tempValue = tempTokens[x].toLowerCase();
+            //removing non alphanumeric char
+            tempValue = tempValue.replaceAll("[^A-Za-z0-9]", "");
+            //checking if numeric char in the string: if yes, discarded
+            if (tempValue == tempValue.replaceAll("[^a-zA-Z]", "")) {
+                char[] toStem = tempValue.toCharArray();
+                int termId = stemCache.lookup(toStem, toStem.length);
+
+                if (termId != StemCache.STOP_WORD) {
+                    if (count == docTerms.length) {
+                        docTerms = Arrays.copyOf(docTerms, count * 2);
+                    }
+                    //we store all the tokens contained in a doc (with duplicates, to get the freq after)
+                    docTerms[count++] = termId;
+                }
+            }
+        }
+        builder.addDocument(docID, docTerms, count);
+    }
+
+    // the vocabulary in alphabetical order, available once the index is built
+    public List<String> getVocabulary()
+	{return(dictionary.getSortedTerms());
+	}
+	// the hit, miss and eviction counters of the stem cache (of all ingestion threads)
+	public StemCache getStemCache()
+	{return(stemCache);
+	}
+	public TermDictionary getDictionary()
+	{return(dictionary);
+	}
+}
@@ -6,9 +6,12 @@ import java.util.List;
 public class Query {
 
     // a query is an object with an id and a list of terms.
+    // A query of the topics also has the ID of the last tweet posted before it (querytweettime),
+    // later tweets are not relevant to it (see RetrieveRank.setTimeCutoff)
 
     private String id;
     private List<String> queryTerms;
+    private long maxTweetId = Long.MAX_VALUE;
 
     public Query(String id, List<String> queryTerms) {
         this.id = id;
@@ -24,6 +27,15 @@ public class Query {
     }
 
 
+    // the largest tweet ID the query can be answered with, Long.MAX_VALUE if there is no cutoff
+    public long getMaxTweetId() {
+        return maxTweetId;
+    }
+
+    public void setMaxTweetId(long maxTweetId) {
+        this.maxTweetId = maxTweetId;
+    }
+
     public List<String> getQueryTerms() {
         return queryTerms;
     }
@@ -0,0 +1,21 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class QueryExecutors {
+
+    // executors for scoring queries in parallel (see RetrieveRank.getRankedResults)
+
+    // a pool of `threads` platform threads, or when virtual is set a virtual thread per task.
+    // Virtual threads need Java 21, the executor is looked up by reflection so the code still
+    // runs on older JVMs, which get the platform thread pool instead
+    public static ExecutorService newExecutor(int threads, boolean virtual) {
+        if (virtual) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (Exception e) {
+                System.out.println("Virtual threads are not available, using " + threads + " platform threads");
+            }
+        }
+        return Executors.newFixedThreadPool(Math.max(1, threads));
+    }
+}
@@ -1,18 +1,21 @@
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 public class QueryParser {
 
-    public static ArrayList<Query> getQueries(String fileName, List<String> stopWords) {
+    // number of surface forms kept in the stem cache while parsing queries
+    private static final int QUERY_STEM_CACHE_SIZE = 1024;
+
+    public static ArrayList<Query> getQueries(String fileName, TermDictionary dictionary) {
 
         try {
             ArrayList<Query> queries = new ArrayList<>();
             FileReader fileReader = new FileReader(fileName);
             BufferedReader bufferedReader = new BufferedReader(fileReader);
             String line = bufferedReader.readLine();
+            StemCache stemCache = newStemCache(dictionary);
 
             while (line != null) {
                 // determine if this line contains relevant information
@@ -26,27 +29,12 @@ public class QueryParser {
                     line = bufferedReader.readLine();
                     String query = line.substring(8, line.length() - 9).trim();
                     // now preprocess the query
-                    List<String> queryTerms = new ArrayList<String>();
-                    query = query.replaceAll("http\\S+", "");
-                    String[] tokens = query.split(" ");
-                    Stemmer myStemm = new Stemmer();
-                    for (String word : tokens) {
-                        word = word.replaceAll("[^A-Za-z0-9]", "");
-                        if(word == word.replaceAll("[^a-zA-Z]", "")) {
-                            char[] toStem = word.toCharArray();
-                            myStemm.add(toStem,toStem.length);
-                            myStemm.stem();
-                            String stemmed = myStemm.toString();
-                            if(!stopWords.contains(stemmed) && stemmed!="") {
-                                queryTerms.add(stemmed);
-                            }
-                        }
-                    }
-
-                    // queryTerms now contain all the relevant terms of the query
-
-                    Query newQuery = new Query(id, queryTerms);
+                    Query newQuery = parseQuery(id, query, stemCache);
                     queries.add(newQuery);
+                } else if (line.contains("<querytweettime>") && !queries.isEmpty()) {
+                    // the ID of the last tweet before the query, for the query just read
+                    String tweetId = line.replaceAll("<[^>]*>", "").trim();
+                    queries.get(queries.size() - 1).setMaxTweetId(Long.parseLong(tweetId));
                 }
                 line = bufferedReader.readLine();
 
@@ -60,7 +48,29 @@ public class QueryParser {
         return null;
     }
 
+    // a new stem cache for parseQuery, a stem cache must only be used by one thread
+    public static StemCache newStemCache(TermDictionary dictionary) {
+        return new StemCache(dictionary, QUERY_STEM_CACHE_SIZE, false);
+    }
 
+    // preprocesses the text of a query as the data is preprocessed (urls and non alphanumeric
+    // characters removed, words with digits and stop words dropped, words stemmed)
+    public static Query parseQuery(String id, String query, StemCache stemCache) {
+        List<String> queryTerms = new ArrayList<String>();
+        query = query.replaceAll("http\\S+", "");
+        String[] tokens = query.split(" ");
+        for (String word : tokens) {
+            word = word.replaceAll("[^A-Za-z0-9]", "");
+            if(word == word.replaceAll("[^a-zA-Z]", "")) {
+                char[] toStem = word.toCharArray();
+                // terms are only looked up, queries don't add terms to the dictionary
+                if(stemCache.lookup(toStem, toStem.length) != StemCache.STOP_WORD) {
+                    queryTerms.add(stemCache.getLastStem());
+                }
+            }
+        }
 
-
+        // queryTerms now contain all the relevant terms of the query
+        return new Query(id, queryTerms);
+    }
 }
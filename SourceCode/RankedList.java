@@ -0,0 +1,26 @@
+public class RankedList {
+
+    // the ranked documents of a query, best first: parallel arrays of int docIds
+    // (see DocTable) and scores
+
+    private int[] docIds;
+    private double[] scores;
+
+    public RankedList(int[] docIds, double[] scores) {
+        this.docIds = docIds;
+        this.scores = scores;
+    }
+
+    public int size() {
+        return docIds.length;
+    }
+
+    // the docId of the document at the given rank (0 is the best)
+    public int getDocId(int rank) {
+        return docIds[rank];
+    }
+
+    public double getScore(int rank) {
+        return scores[rank];
+    }
+}
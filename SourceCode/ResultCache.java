@@ -0,0 +1,139 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ResultCache {
+
+    // cache of ranked results, for query traffic that repeats. The key is the multiset of the
+    // (stemmed) query terms, sorted so that the order of the words doesn't matter, and k.
+    // Entries are evicted in least recently used order once their estimated size is over
+    // maxBytes. The results are only valid for one generation of the index: when the index
+    // changes (InvertedIndex.getGeneration) the whole cache is dropped.
+    // Note: scores are sums over the query terms in query order, so a query with the same
+    // terms in another order can get scores that differ in the last bits from the cached ones.
+    // The methods are synchronized, the cache can be shared by scoring threads
+
+    // estimated bytes of an entry besides its arrays: the map node, the key, the RankedList
+    private static final long ENTRY_OVERHEAD = 160;
+
+    private long maxBytes;
+    private long bytes;
+    private long generation;
+    private LinkedHashMap<String, RankedList> entries;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    public ResultCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        // access order: iteration starts at the least recently used entry
+        entries = new LinkedHashMap<>(16, 0.75f, true);
+        generation = -1;
+    }
+
+    // the key of a query: its sorted terms and k
+    public static String key(Query query, int k) {
+        List<String> terms = new ArrayList<>(query.getQueryTerms());
+        Collections.sort(terms);
+        return String.join(" ", terms) + "#" + k;
+    }
+
+    // the key of the results of the query ranked up to a tweet ID (Long.MAX_VALUE: no cutoff)
+    public static String key(Query query, int k, long maxTweetId) {
+        return maxTweetId == Long.MAX_VALUE ? key(query, k) : key(query, k) + "<" + maxTweetId;
+    }
+
+    // returns the cached results of the query, or null
+    public synchronized RankedList get(String key, long indexGeneration) {
+        checkGeneration(indexGeneration);
+        RankedList ranked = indexGeneration == generation ? entries.get(key) : null;
+        if (ranked == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return ranked;
+    }
+
+    // adds the results of a query, scored on the given generation of the index
+    public synchronized void put(String key, RankedList ranked, long indexGeneration) {
+        checkGeneration(indexGeneration);
+        long size = size(key, ranked);
+        // results of an older generation (the index changed while they were scored) are not kept
+        if (indexGeneration != generation || size > maxBytes) {
+            return;
+        }
+        RankedList previous = entries.put(key, ranked);
+        if (previous != null) {
+            bytes -= size(key, previous);
+        }
+        bytes += size;
+        // evict the least recently used entries
+        Iterator<Map.Entry<String, RankedList>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, RankedList> entry = eldest.next();
+            bytes -= size(entry.getKey(), entry.getValue());
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    // drops the entries once the index has a newer generation than the one they were computed on
+    private void checkGeneration(long indexGeneration) {
+        if (indexGeneration > generation) {
+            if (!entries.isEmpty()) {
+                invalidations++;
+            }
+            entries.clear();
+            bytes = 0;
+            generation = indexGeneration;
+        }
+    }
+
+    // estimated heap size of an entry
+    private static long size(String key, RankedList ranked) {
+        return ENTRY_OVERHEAD + 2L * key.length() + 12L * ranked.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    // number of times the cache was dropped because the index changed
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // estimated bytes used by the entries
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Result cache: %d entries, %d bytes of %d, %d hits, %d misses (hit rate %.1f%%), %d evictions, %d invalidations",
+                entries.size(), bytes, maxBytes, hits, misses, 100 * getHitRate(), evictions, invalidations);
+    }
+}
@@ -2,30 +2,104 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 public class RetrieveRank {
 
-    private InvertedIndex invertedIndex;
+    // an InvertedIndex, or a SegmentedIndex that keeps growing while queries are scored:
+    // every query is scored on a snapshot of the index
+    private SearchableIndex invertedIndex;
     private List<Query> queries;
-    private HashMap<String, Integer> documentLengths;
+    // the scoring scratch space of each thread, reused by every query it scores
+    private ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+    // score the queries document at a time with MaxScore pruning, see getTopResultsPruned
+    private boolean dynamicPruning;
+    // cache of the ranked results, null when results are not cached
+    private ResultCache resultCache;
+    // rank only the tweets up to the query's tweet time, see getTopResultsBefore
+    private boolean timeCutoff;
+    private long postingsScored;
+    private long postingsSkipped;
+    private long scoringNanos;
+    private long shardsSearched;
+    private long shardsSkipped;
+    // latencies of the queries (cache hits included), null when they are not recorded
+    private LatencyHistogram latencyHistogram;
+    private long workerAllocatedBytes;
 
-    public RetrieveRank(InvertedIndex invertedIndex, List<Query> queries, HashMap<String, Integer> documentLengths) {
+    public RetrieveRank(SearchableIndex invertedIndex, List<Query> queries) {
         this.invertedIndex = invertedIndex;
         this.queries = queries;
-        this.documentLengths = documentLengths;
     }
 
-    // returns the queries with their scores
-    // query -> [docID, score]
-    public Map<Query, Map<String, Double>> getRankedResults() {
-        // for each query, compute its relevant documents and cosine scores
-        LinkedHashMap<Query, Map<String, Double>> results = new LinkedHashMap<>();
+    // number of documents ranked per query by default
+    public static final int DEFAULT_TOP_K = 1000;
+
+    // returns the queries with their DEFAULT_TOP_K best documents
+    public Map<Query, RankedList> getRankedResults() {
+        return getRankedResults(DEFAULT_TOP_K);
+    }
+
+    // returns the queries with their k best documents
+    // query -> [docId, score] ranked by decreasing score
+    public Map<Query, RankedList> getRankedResults(int k) {
+        // for each query, compute its relevant documents and scores
+        LinkedHashMap<Query, RankedList> results = new LinkedHashMap<>();
+        for (Query query : queries) {
+            results.put(query, getTopResults(query, k));
+        }
+        return results;
+    }
+
+    // same as getRankedResults, but the queries are scored in parallel by the tasks of the
+    // executor, the results are still in the order of the queries.
+    // The index is only read while scoring, it must not be changed until this returns
+    public Map<Query, RankedList> getRankedResults(int k, ExecutorService executor) throws Exception {
+        List<Future<RankedList>> futures = new ArrayList<>();
         for (Query query : queries) {
-            results.put(query, getScore(query));
+            futures.add(executor.submit(() -> {
+                long allocatedBytes = PipelineMetrics.threadAllocatedBytes();
+                RankedList ranked = getTopResults(query, k);
+                addWorkerAllocatedBytes(PipelineMetrics.threadAllocatedBytes() - allocatedBytes);
+                return ranked;
+            }));
+        }
+        LinkedHashMap<Query, RankedList> results = new LinkedHashMap<>();
+        for (int q = 0; q < queries.size(); q++) {
+            results.put(queries.get(q), futures.get(q).get());
         }
         return results;
     }
 
+    // the scoring scratch space of a thread: the accumulator of term at a time scoring and
+    // the top k heap
+    private class Scratch {
+        private ScoreAccumulator accumulator;
+        private TopKHeap heap;
+
+        // an accumulator for at least documentCount documents, the index may have grown
+        // since the accumulator was allocated
+        ScoreAccumulator accumulator(int documentCount) {
+            if (accumulator == null || accumulator.capacity() < documentCount) {
+                accumulator = new ScoreAccumulator(documentCount);
+            }
+            return accumulator;
+        }
+
+        // a heap keeping the k best documents of an index of documentCount documents: it never
+        // holds more than documentCount, and a larger heap allocated before is reused
+        TopKHeap heap(int k, int documentCount) {
+            k = Math.min(k, documentCount);
+            if (heap == null || heap.maxCapacity() < k) {
+                heap = new TopKHeap(k);
+            } else {
+                heap.reset(k);
+            }
+            return heap;
+        }
+    }
+
     // look at each term in query, calculate its frequency with respect to the entire query
     // returns a hashmap of term -> term frequency, for given query
     public HashMap<String,Double> getQueryTermFrequencies(Query query) {
@@ -44,23 +118,29 @@ public class RetrieveRank {
         return queryTermFrequencies;
     }
 
-    // method calculates the tf-idf of each term in a given query
-    // the weights are then normalized
-    // return hashmap of term -> tf-idf for each term in query
+    // method calculates the weight of each term in a given query with the similarity of the
+    // index (the tf-idf for the cosine), the weights are then normalized if the similarity does
+    // return hashmap of term -> weight for each term in query
     public HashMap<String,Double> getNormalizedQueryWeights(Query query) {
+        return getNormalizedQueryWeights(invertedIndex.snapshot(), query);
+    }
+
+    private HashMap<String,Double> getNormalizedQueryWeights(SearchableIndex invertedIndex, Query query) {
+        Similarity similarity = invertedIndex.getSimilarity();
         // get the tf of each word in the query
         HashMap<String, Double> queryWeights = getQueryTermFrequencies(query);
-        // for each term in the query, compute the tf-idf
+        // for each term in the query, compute its weight
         for(String term : query.getQueryTerms()){
-            // get the idf of the term from the inverted index
-            double idf = invertedIndex.getTermIDF(term);
             // get the tf of this term
             double tf = queryWeights.get(term);
-            // for each word compute W_iq=(0.5+0.5*tf_word_in_query)*idf_word_in_corpus
-            double weight = ( 0.5 + 0.5 * tf) * idf;
+            // the cosine computes W_iq=(0.5+0.5*tf_word_in_query)*idf_word_in_corpus
+            double weight = similarity.queryWeight(tf, invertedIndex, term);
             // add (word,w_iq) in the queryWeights
             queryWeights.put(term, weight);
         }
+        if (!similarity.normalizesQuery()) {
+            return queryWeights;
+        }
 
         // now normalizing the weights
         double sum = (double) 0;
@@ -81,56 +161,358 @@ public class RetrieveRank {
     }
 
     // this is the score computing function function
-    // computes the cosine score of each document for the specific query
-    // Returns hashmap of docID -> cosineScore for the query
-    private Map<String,Double> getScore(Query query) {
+    // computes the score of each document for the specific query (with the similarity of the
+    // index, see Similarity), term at a time:
+    // the postings of each query term are added to a dense accumulator indexed by docId
+    // then the k best documents are selected with a bounded heap
+    // Returns the k best documents of the query, ranked by decreasing score (ties by docId)
+    public RankedList getTopResults(Query query, int k) {
+        if (latencyHistogram == null) {
+            return getTopResultsCached(query, k);
+        }
+        long start = System.nanoTime();
+        RankedList ranked = getTopResultsCached(query, k);
+        latencyHistogram.record(System.nanoTime() - start);
+        return ranked;
+    }
+
+    private RankedList getTopResultsCached(Query query, int k) {
+        SearchableIndex index = invertedIndex.snapshot();
+        if (resultCache != null) {
+            // the results are cached with the generation of the snapshot they were scored on
+            long generation = index.getGeneration();
+            String key = ResultCache.key(query, k, timeCutoff ? query.getMaxTweetId() : Long.MAX_VALUE);
+            RankedList ranked = resultCache.get(key, generation);
+            if (ranked == null) {
+                ranked = score(index, query, k);
+                resultCache.put(key, ranked, generation);
+            }
+            return ranked;
+        }
+        return score(index, query, k);
+    }
+
+    private RankedList score(SearchableIndex index, Query query, int k) {
+        if (timeCutoff && query.getMaxTweetId() != Long.MAX_VALUE) {
+            return getTopResultsBefore(index, query, k);
+        }
+        return dynamicPruning ? getTopResultsPruned(index, query, k) : getTopResultsExhaustive(index, query, k);
+    }
+
+    // scores every posting of the query terms, see getTopResults
+    private RankedList getTopResultsExhaustive(SearchableIndex invertedIndex, Query query, int k) {
+        long start = System.nanoTime();
+        HashMap<String,Double> queryWeights = getNormalizedQueryWeights(invertedIndex, query);
+        TopKHeap heap = scratch.get().heap(k, invertedIndex.getDocumentCount());
+        scoreExhaustive(invertedIndex, query, queryWeights, heap, Long.MAX_VALUE);
+        addCounts(0, 0, System.nanoTime() - start);
+        return heap.toRankedList();
+    }
+
+    // adds the documents of the index (up to the tweet ID maxTweetId) to the heap,
+    // scored term at a time
+    private void scoreExhaustive(SearchableIndex invertedIndex, Query query, HashMap<String,Double> queryWeights,
+                                 TopKHeap heap, long maxTweetId) {
         //score(query,doc)=sum_(i=words) weight(i,query)*weight(i,doc)
-        HashMap<String,Double> scores = new HashMap<>();
-        HashMap<String,Double> queryWeights = getNormalizedQueryWeights(query);
+        ScoreAccumulator accumulator = scratch.get().accumulator(invertedIndex.getDocumentCount());
+        Similarity similarity = invertedIndex.getSimilarity();
 
+        long scored = 0;
         //for each term of the query
         for(String term : query.getQueryTerms()) {
-            //get weight (term, query)
-            double w_q = queryWeights.get(term);
-            // get the list of documents that contain this term with their normalized weights
-            HashMap<String, Double> termWeights = invertedIndex.getNormalizedWeight(term);
+            // get the list of documents that contain this term
+            PostingsCursor postings = invertedIndex.getPostingsCursor(term);
             // check if this term was in our vocabulary
-            if(termWeights == null)
+            if(postings == null)
                 continue;
+            // weight (term, query) times weight(term,doc), for the cosine: the normalized tf-idf
+            // for this term, docID: idf * tf / norm(doc)
+            Similarity.TermScorer scorer = similarity.scorer(invertedIndex, term, queryWeights.get(term));
             //for each doc containing this term
-            for(String docID : termWeights.keySet()) {
-                // get weight(term,doc)
-                // we need the normalized tf-idf for this term, docID
-                double w_d = termWeights.get(docID);
-
-                // Create or update the score of the doc weightq*weightdoc
-                if(scores.containsKey(docID)) {
-                    scores.put(docID, scores.get(docID) + (w_q * w_d));
-                } else {
-                    scores.put(docID, w_q * w_d);
-                }
+            for(int doc = postings.nextDoc(); doc != PostingsCursor.NO_MORE_DOCS; doc = postings.nextDoc()) {
+                // update the score of the doc
+                accumulator.add(doc, scorer.score(postings.termFrequency(), invertedIndex.getDocumentFactor(doc)));
             }
+            scored += postings.size();
         }
 
-        // now we sort the documents by score
-        // put in list using entry, so we can access it in compare()
-        LinkedList<Map.Entry<String, Double>> docsAndScores = new LinkedList(scores.entrySet());
+        // now we keep the k best documents
+        boolean filter = invertedIndex.getMaxTweetId() > maxTweetId;
+        for (int i = 0; i < accumulator.size(); i++) {
+            int doc = accumulator.getDocId(i);
+            if (!filter || invertedIndex.getTweetId(doc) <= maxTweetId) {
+                heap.offer(doc, accumulator.getScore(doc));
+            }
+        }
+        accumulator.reset();
+        addCounts(scored, 0, 0);
+    }
+
+    // relative margin added to the upper bounds, so that rounding errors (the normalized weights
+    // are rounded to floats, the bounds are not) never prune a document that exhaustive scoring
+    // would have kept
+    private static final double UPPER_BOUND_MARGIN = 1e-6;
+
+    // true if a document whose score is at most bound can't enter a heap whose k-th score is
+    // threshold. When the heap may hold documents with larger docIds than the candidate (shards
+    // scored newest first), a document tied with the threshold still enters it
+    private static boolean belowThreshold(double bound, double threshold, boolean tiesEnter) {
+        return tiesEnter ? bound * (1 + UPPER_BOUND_MARGIN) < threshold : bound * (1 + UPPER_BOUND_MARGIN) <= threshold;
+    }
+
+    // gives the same ranked documents as getTopResults, but the documents are scored one at a
+    // time in docId order with MaxScore pruning: a term can add at most the upper bound of its
+    // scorer (Similarity.TermScorer.maxScore, for the cosine w_q * idf * its largest normalized
+    // term frequency, see SearchableIndex.getMaxNormalizedFrequency) to a score, so once the heap is full
+    // the terms whose bounds add up to less than the k-th score are "non essential": only the
+    // documents of the other (essential) terms are candidates, and the postings of the non
+    // essential terms are only looked up (advance) while the candidate can still enter the heap.
+    // Within the current block of a cursor, the block-max data of the block bounds the term instead.
+    // Every occurrence of a query term has its own cursor, and the contributions of a document
+    // are added in query order, so its score is exactly the one of term at a time scoring
+    public RankedList getTopResultsPruned(Query query, int k) {
+        return getTopResultsPruned(invertedIndex.snapshot(), query, k);
+    }
+
+    private RankedList getTopResultsPruned(SearchableIndex invertedIndex, Query query, int k) {
+        long start = System.nanoTime();
+        HashMap<String,Double> queryWeights = getNormalizedQueryWeights(invertedIndex, query);
+        TopKHeap heap = scratch.get().heap(k, invertedIndex.getDocumentCount());
+        scorePruned(invertedIndex, query, queryWeights, heap, Long.MAX_VALUE, false);
+        addCounts(0, 0, System.nanoTime() - start);
+        return heap.toRankedList();
+    }
+
+    // adds the documents of the index (up to the tweet ID maxTweetId) to the heap, scored document
+    // at a time with MaxScore pruning, see getTopResultsPruned. tiesEnter is set when the heap
+    // already holds documents with larger docIds (see belowThreshold)
+    private void scorePruned(SearchableIndex invertedIndex, Query query, HashMap<String,Double> queryWeights,
+                             TopKHeap heap, long maxTweetId, boolean tiesEnter) {
+        List<String> terms = query.getQueryTerms();
+        boolean filter = invertedIndex.getMaxTweetId() > maxTweetId;
+
+        // a cursor per query term occurrence, in query order
+        int n = 0;
+        PostingsCursor[] cursors = new PostingsCursor[terms.size()];
+        Similarity.TermScorer[] scorers = new Similarity.TermScorer[terms.size()];
+        double[] upperBounds = new double[terms.size()];
+        long postings = 0;
+        Similarity similarity = invertedIndex.getSimilarity();
+        for (String term : terms) {
+            cursors[n] = invertedIndex.getPostingsCursor(term);
+            if (cursors[n] == null)
+                continue;
+            scorers[n] = similarity.scorer(invertedIndex, term, queryWeights.get(term));
+            upperBounds[n] = scorers[n].maxScore() * (1 + UPPER_BOUND_MARGIN);
+            postings += cursors[n].size();
+            cursors[n].nextDoc();
+            n++;
+        }
 
-        // sorting the list by term frequency
-        Collections.sort(docsAndScores, new Comparator<Map.Entry<String, Double>>() {
+        // the cursors ordered by increasing upper bound, with the sums of the bounds
+        Integer[] byBound = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            byBound[i] = i;
+        }
+        Arrays.sort(byBound, (a, b) -> Double.compare(upperBounds[a], upperBounds[b]));
+        double[] boundSums = new double[n + 1];
+        for (int i = 0; i < n; i++) {
+            boundSums[i + 1] = boundSums[i] + upperBounds[byBound[i]];
+        }
 
-            @Override
-            public int compare(Map.Entry<String, Double> t1, Map.Entry<String, Double> t2) {
-                return t2.getValue().compareTo(t1.getValue());
+        double[] contributions = new double[n];
+        boolean[] matched = new boolean[n];
+        long evaluated = 0;
+        // byBound[0 .. firstEssential) are the non essential cursors
+        int firstEssential = 0;
+        double threshold = heap.minScore();
+        while (firstEssential < n && belowThreshold(boundSums[firstEssential + 1], threshold, tiesEnter)) {
+            firstEssential++;
+        }
+        while (firstEssential < n) {
+            // the candidate is the smallest docId of the essential cursors
+            int doc = PostingsCursor.NO_MORE_DOCS;
+            for (int e = firstEssential; e < n; e++) {
+                doc = Math.min(doc, cursors[byBound[e]].docId());
+            }
+            if (doc == PostingsCursor.NO_MORE_DOCS) {
+                break;
+            }
+            // score the candidate with the essential cursors, then with the non essential
+            // ones from the largest bound down, while it can still beat the threshold
+            double bound = boundSums[firstEssential];
+            boolean pruned = filter && invertedIndex.getTweetId(doc) > maxTweetId;
+            for (int e = n - 1; e >= 0 && !pruned; e--) {
+                int c = byBound[e];
+                if (e < firstEssential) {
+                    if (belowThreshold(bound, threshold, tiesEnter)) {
+                        pruned = true;
+                        break;
+                    }
+                    bound -= upperBounds[c];
+                    PostingsCursor cursor = cursors[c];
+                    if (cursor.docId() < doc && doc <= cursor.blockLastDocId()) {
+                        // the posting of the candidate, if any, is in the current block of the
+                        // cursor, whose block-max data may give a tighter bound
+                        double blockBound = scorers[c].blockMaxScore(cursor) * (1 + UPPER_BOUND_MARGIN);
+                        if (belowThreshold(bound + blockBound, threshold, tiesEnter)) {
+                            pruned = true;
+                            break;
+                        }
+                    }
+                    if (cursor.advance(doc) != doc) {
+                        continue;
+                    }
+                } else if (cursors[c].docId() != doc) {
+                    continue;
+                }
+                contributions[c] = scorers[c].score(cursors[c].termFrequency(), invertedIndex.getDocumentFactor(doc));
+                matched[c] = true;
+                evaluated++;
+                bound += contributions[c];
+            }
+            // add the contributions in query order, as term at a time scoring does
+            double score = 0;
+            for (int c = 0; c < n; c++) {
+                if (matched[c]) {
+                    score += contributions[c];
+                    matched[c] = false;
+                }
+            }
+            if (!pruned && heap.offer(doc, score)) {
+                threshold = heap.minScore();
+                while (firstEssential < n && belowThreshold(boundSums[firstEssential + 1], threshold, tiesEnter)) {
+                    firstEssential++;
+                }
+            }
+            for (int e = firstEssential; e < n; e++) {
+                PostingsCursor cursor = cursors[byBound[e]];
+                if (cursor.docId() == doc) {
+                    cursor.nextDoc();
+                }
             }
-        });
+        }
+        addCounts(evaluated, postings - evaluated, 0);
+    }
 
-        // Storing the list into LinkedHashMap to preserve the order of insertion.
-        Map<String, Double> sortedScores = new LinkedHashMap<>();
-        for (Map.Entry<String, Double> entry : docsAndScores) {
-            sortedScores.put(entry.getKey(), entry.getValue());
+    // ranks the documents up to the tweet ID of the query (Query.getMaxTweetId) with the time
+    // shards of the index: the shards are scored from the newest to the oldest, the shards with
+    // only later tweets are skipped, and once the heap is full an older shard is skipped when
+    // the bounds of the query terms in it (Similarity.TermScorer.maxScore on the shard, for the
+    // cosine w_q * idf * largest tf / norm of the term in the shard) add up to less than the
+    // k-th score. With the tweets in time order, the k results mostly come from the newest
+    // shards and the older ones end early. Scores use the statistics of the
+    // whole index, so the documents ranked are the ones of the unsharded index up to the cutoff
+    private RankedList getTopResultsBefore(SearchableIndex invertedIndex, Query query, int k) {
+        long start = System.nanoTime();
+        long maxTweetId = query.getMaxTweetId();
+        HashMap<String,Double> queryWeights = getNormalizedQueryWeights(invertedIndex, query);
+        TopKHeap heap = scratch.get().heap(k, invertedIndex.getDocumentCount());
+        long skipped = 0;
+        for (int s = invertedIndex.getShardCount() - 1; s >= 0; s--) {
+            SearchableIndex shard = invertedIndex.getShard(s);
+            boolean skip = shard.getMinTweetId() > maxTweetId;
+            if (!skip && heap.size() == heap.capacity()) {
+                double bound = 0;
+                Similarity similarity = shard.getSimilarity();
+                for (String term : query.getQueryTerms()) {
+                    bound += similarity.scorer(shard, term, queryWeights.get(term)).maxScore();
+                }
+                skip = belowThreshold(bound, heap.minScore(), true);
+            }
+            if (skip) {
+                skipped++;
+                for (String term : query.getQueryTerms()) {
+                    PostingsCursor postings = shard.getPostingsCursor(term);
+                    addCounts(0, postings == null ? 0 : postings.size(), 0);
+                }
+            } else if (dynamicPruning) {
+                scorePruned(shard, query, queryWeights, heap, maxTweetId, heap.size() > 0);
+            } else {
+                scoreExhaustive(shard, query, queryWeights, heap, maxTweetId);
+            }
         }
+        addShards(invertedIndex.getShardCount() - skipped, skipped, System.nanoTime() - start);
+        return heap.toRankedList();
+    }
+
+    // caches the ranked results of the queries (null to stop caching)
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    // when set, the queries are scored document at a time with MaxScore pruning
+    // (getTopResultsPruned), which gives the same results as scoring every posting
+    public void setDynamicPruning(boolean dynamicPruning) {
+        this.dynamicPruning = dynamicPruning;
+    }
+
+    // records the latency of every query ranked by getTopResults (null to stop recording)
+    public void setLatencyHistogram(LatencyHistogram latencyHistogram) {
+        this.latencyHistogram = latencyHistogram;
+    }
+
+    // when set, a query with a tweet time (Query.getMaxTweetId) only ranks the tweets up to it,
+    // searching the time shards of the index newest first (see getTopResultsBefore)
+    public void setTimeCutoff(boolean timeCutoff) {
+        this.timeCutoff = timeCutoff;
+    }
+
+    // adds the shard counters and the time of a query ranked with a tweet time cutoff
+    private synchronized void addShards(long searched, long skipped, long nanos) {
+        shardsSearched += searched;
+        shardsSkipped += skipped;
+        scoringNanos += nanos;
+    }
+
+    // number of time shards scored for the queries with a tweet time cutoff
+    public synchronized long getShardsSearched() {
+        return shardsSearched;
+    }
+
+    // number of time shards skipped: after the cutoff, or unable to improve the k results
+    public synchronized long getShardsSkipped() {
+        return shardsSkipped;
+    }
+
+    // adds the counters of a scored query, queries may be scored by several threads
+    private synchronized void addCounts(long scored, long skipped, long nanos) {
+        postingsScored += scored;
+        postingsSkipped += skipped;
+        scoringNanos += nanos;
+    }
+
+    private synchronized void addWorkerAllocatedBytes(long bytes) {
+        workerAllocatedBytes += Math.max(0, bytes);
+    }
+
+    // bytes allocated by the executor threads scoring the queries of getRankedResults
+    public synchronized long getWorkerAllocatedBytes() {
+        return workerAllocatedBytes;
+    }
+
+    // number of postings scored so far
+    public synchronized long getPostingsScored() {
+        return postingsScored;
+    }
+
+    // number of postings of the query terms that dynamic pruning didn't have to score
+    public synchronized long getPostingsSkipped() {
+        return postingsSkipped;
+    }
+
+    // scoring throughput of the queries ranked so far, in postings per second of scoring
+    // time (with several threads, per thread)
+    public synchronized double getPostingsPerSecond() {
+        return scoringNanos == 0 ? 0 : postingsScored * 1e9 / scoringNanos;
+    }
 
-        return sortedScores;
+    // time spent scoring the queries ranked so far, in milliseconds (summed over the threads)
+    public synchronized double getScoringMillis() {
+        return scoringNanos / 1e6;
     }
 }
@@ -0,0 +1,61 @@
+import java.util.Arrays;
+
+public class ScoreAccumulator {
+
+    // dense score accumulator for term-at-a-time scoring: the score of a document is kept
+    // at its int docId, and the docIds touched by the current query are listed so that
+    // only they have to be cleared before the next query. An accumulator is reused across
+    // queries, so scoring a query allocates nothing once the arrays have their size.
+    // Not thread safe, each scoring thread needs its own accumulator.
+
+    private double[] scores;
+    private boolean[] touched;
+    private int[] touchedDocs;
+    private int touchedCount;
+
+    public ScoreAccumulator(int documentCount) {
+        scores = new double[documentCount];
+        touched = new boolean[documentCount];
+        touchedDocs = new int[Math.min(documentCount, 1024)];
+    }
+
+    // adds value to the score of a document
+    public void add(int docId, double value) {
+        if (!touched[docId]) {
+            touched[docId] = true;
+            if (touchedCount == touchedDocs.length) {
+                touchedDocs = Arrays.copyOf(touchedDocs, touchedCount * 2);
+            }
+            touchedDocs[touchedCount++] = docId;
+        }
+        scores[docId] += value;
+    }
+
+    // number of documents the accumulator can hold
+    public int capacity() {
+        return scores.length;
+    }
+
+    public double getScore(int docId) {
+        return scores[docId];
+    }
+
+    // number of documents with a score
+    public int size() {
+        return touchedCount;
+    }
+
+    // the i-th scored document, in the order they were first scored
+    public int getDocId(int i) {
+        return touchedDocs[i];
+    }
+
+    // clears the scores of the touched documents, ready for the next query
+    public void reset() {
+        for (int i = 0; i < touchedCount; i++) {
+            scores[touchedDocs[i]] = 0;
+            touched[touchedDocs[i]] = false;
+        }
+        touchedCount = 0;
+    }
+}
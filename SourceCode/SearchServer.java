@@ -0,0 +1,248 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+public class SearchServer {
+
+    // a resident search service: the index is loaded once and queries are answered over HTTP
+    //   GET /search?q=TEXT[&k=N][&id=TOPIC][&tag=TAG][&maxid=TWEETID]   (or POST /search with the text as the body)
+    //     the text is preprocessed as the topics are (QueryParser.parseQuery) and the k best
+    //     documents (RetrieveRank.DEFAULT_TOP_K by default, at most MAX_K) are returned as TREC run lines:
+    //     "TOPIC Q0 docID rank score TAG", one per line (text/plain). With maxid only the tweets
+    //     up to that tweet ID are ranked (RetrieveRank.setTimeCutoff)
+    //   GET /stats   number of queries served and their mean latency, and the cache counters
+    //   POST /append   (SegmentedIndex only) adds the tweets of the body, data lines as in the
+    //     data file (docID, tab, text), they are searchable once the request returns
+    // The requests are handled by the threads of the executor, queries are scored on snapshots
+    // of the index. The server listens on the loopback address unless another one is given
+
+    // the largest k a query may ask for
+    public static final int MAX_K = 10000;
+
+    private HttpServer server;
+    private SearchableIndex index;
+    private RetrieveRank rank;
+    // a stem cache is not thread safe, each handler thread has its own
+    private ThreadLocal<StemCache> stemCache;
+    private long queries;
+    private long latencyNanos;
+
+    public SearchServer(SearchableIndex index, int port, ExecutorService executor) throws IOException {
+        this(index, InetAddress.getLoopbackAddress(), port, executor);
+    }
+
+    public SearchServer(SearchableIndex index, InetAddress address, int port, ExecutorService executor) throws IOException {
+        this.index = index;
+        rank = new RetrieveRank(index, Collections.<Query>emptyList());
+        rank.setTimeCutoff(true);
+        stemCache = ThreadLocal.withInitial(() -> QueryParser.newStemCache(index.getDictionary()));
+        server = HttpServer.create(new InetSocketAddress(address, port), 0);
+        server.createContext("/search", this::handleSearch);
+        server.createContext("/stats", this::handleStats);
+        if (index instanceof SegmentedIndex) {
+            server.createContext("/append", this::handleAppend);
+        }
+        server.setExecutor(executor);
+    }
+
+    // scores the queries document at a time with MaxScore pruning (see RetrieveRank)
+    public void setDynamicPruning(boolean dynamicPruning) {
+        rank.setDynamicPruning(dynamicPruning);
+    }
+
+    // caches the ranked results of the queries
+    public void setResultCache(ResultCache resultCache) {
+        rank.setResultCache(resultCache);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    // stops the server, waiting at most `seconds` for the requests being handled
+    public void stop(int seconds) {
+        server.stop(seconds);
+    }
+
+    // the port the server listens on (useful when it was created with port 0)
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // answers a query with its ranked documents as TREC run lines
+    public String search(String id, String text, int k, String tag) {
+        return search(id, text, k, tag, Long.MAX_VALUE);
+    }
+
+    // answers a query with its ranked documents up to the tweet ID maxTweetId
+    public String search(String id, String text, int k, String tag, long maxTweetId) {
+        long start = System.nanoTime();
+        Query query = QueryParser.parseQuery(id, text, stemCache.get());
+        query.setMaxTweetId(maxTweetId);
+        RankedList ranked = rank.getTopResults(query, k);
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < ranked.size(); i++) {
+            result.append(id).append(" Q0 ").append(index.getDocumentID(ranked.getDocId(i)))
+                    .append(' ').append(i + 1).append(' ').append(TrecRunWriter.formatScore(ranked.getScore(i)))
+                    .append(' ').append(tag).append('\n');
+        }
+        addLatency(System.nanoTime() - start);
+        return result.toString();
+    }
+
+    private synchronized void addLatency(long nanos) {
+        queries++;
+        latencyNanos += nanos;
+    }
+
+    private void handleSearch(HttpExchange exchange) throws IOException {
+        try {
+            Map<String, String> parameters = parseParameters(exchange.getRequestURI().getRawQuery());
+            String text = parameters.get("q");
+            if (exchange.getRequestMethod().equals("POST")) {
+                text = readBody(exchange.getRequestBody());
+            } else if (!exchange.getRequestMethod().equals("GET")) {
+                send(exchange, 405, "Use GET or POST\n");
+                return;
+            }
+            if (text == null || text.trim().isEmpty()) {
+                send(exchange, 400, "Missing query text: /search?q=TEXT\n");
+                return;
+            }
+            int k = RetrieveRank.DEFAULT_TOP_K;
+            if (parameters.containsKey("k")) {
+                k = Integer.parseInt(parameters.get("k"));
+                if (k < 0) {
+                    send(exchange, 400, "k must not be negative\n");
+                    return;
+                }
+                if (k > MAX_K) {
+                    send(exchange, 400, "k must be at most " + MAX_K + "\n");
+                    return;
+                }
+            }
+            String id = parameters.getOrDefault("id", "Q");
+            String tag = parameters.getOrDefault("tag", "myRun");
+            long maxTweetId = Long.MAX_VALUE;
+            if (parameters.containsKey("maxid")) {
+                maxTweetId = Long.parseLong(parameters.get("maxid"));
+            }
+            send(exchange, 200, search(id, text, k, tag, maxTweetId));
+        } catch (NumberFormatException e) {
+            send(exchange, 400, "Invalid number: " + e.getMessage() + "\n");
+        } catch (Exception e) {
+            System.out.println("Error answering " + exchange.getRequestURI());
+            e.printStackTrace();
+            send(exchange, 500, e + "\n");
+        }
+    }
+
+    private void handleAppend(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("POST")) {
+            send(exchange, 405, "Use POST\n");
+            return;
+        }
+        try {
+            SegmentedIndex segmentedIndex = (SegmentedIndex) index;
+            List<String> lines = new ArrayList<>();
+            for (String line : readBody(exchange.getRequestBody()).split("\n")) {
+                if (!line.trim().isEmpty()) {
+                    lines.add(line);
+                }
+            }
+            segmentedIndex.append(lines);
+            send(exchange, 200, "documents " + segmentedIndex.getDocumentCount() + "\n");
+        } catch (Exception e) {
+            System.out.println("Error answering " + exchange.getRequestURI());
+            e.printStackTrace();
+            send(exchange, 500, e + "\n");
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        String stats;
+        synchronized (this) {
+            stats = "queries " + queries + "\n"
+                    + String.format("mean_latency_ms %.3f%n", queries == 0 ? 0 : latencyNanos / 1e6 / queries);
+        }
+        ResultCache cache = rank.getResultCache();
+        if (cache != null) {
+            stats += "cache_entries " + cache.size() + "\n"
+                    + "cache_bytes " + cache.getBytes() + "\n"
+                    + "cache_hits " + cache.getHits() + "\n"
+                    + "cache_misses " + cache.getMisses() + "\n"
+                    + "cache_evictions " + cache.getEvictions() + "\n"
+                    + "cache_invalidations " + cache.getInvalidations() + "\n";
+        }
+        PostingsCache postingsCache = index instanceof InvertedIndex ? ((InvertedIndex) index).getPostingsCache() : null;
+        if (postingsCache != null) {
+            stats += "postings_cache_lists " + postingsCache.size() + "\n"
+                    + "postings_cache_bytes " + postingsCache.getBytes() + "\n"
+                    + "postings_cache_hits " + postingsCache.getHits() + "\n"
+                    + "postings_cache_misses " + postingsCache.getMisses() + "\n"
+                    + "postings_cache_admissions " + postingsCache.getAdmissions() + "\n"
+                    + "postings_cache_rejections " + postingsCache.getRejections() + "\n"
+                    + "postings_cache_evictions " + postingsCache.getEvictions() + "\n";
+        }
+        if (index instanceof SegmentedIndex) {
+            SegmentedIndex segmentedIndex = (SegmentedIndex) index;
+            stats += "documents " + segmentedIndex.getDocumentCount() + "\n"
+                    + "segments " + segmentedIndex.getSegmentCount() + "\n"
+                    + "appended_documents " + segmentedIndex.getAppendedDocuments() + "\n"
+                    + "merges " + segmentedIndex.getMergeScheduler().getMerges() + "\n"
+                    + "merged_postings " + segmentedIndex.getMergeScheduler().getMergedPostings() + "\n"
+                    + String.format("merge_ms %.1f%n", segmentedIndex.getMergeScheduler().getMergeMillis())
+                    + String.format("write_amplification %.3f%n", segmentedIndex.getWriteAmplification());
+        }
+        send(exchange, 200, stats);
+    }
+
+    // the parameters of a url query string (name=value&...), url decoded
+    private static Map<String, String> parseParameters(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            body.write(buffer, 0, n);
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void send(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] data = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, data.length == 0 ? -1 : data.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(data);
+        }
+    }
+}
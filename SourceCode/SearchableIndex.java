@@ -0,0 +1,68 @@
+public interface SearchableIndex {
+
+    // what RetrieveRank needs to score queries on an index: the statistics of the terms,
+    // their postings, the document norms and the document factors of its similarity. Terms are looked up by their (stemmed) string,
+    // documents by their dense int docId over the whole index.
+    // Implemented by InvertedIndex, and by SegmentedIndex for an index that keeps growing
+
+    // a view of the index that doesn't change while a query is scored on it
+    // (an InvertedIndex is its own snapshot, it must not be changed while it is searched)
+    SearchableIndex snapshot();
+
+    // the generation of the index, it changes whenever the index does
+    long getGeneration();
+
+    // the dictionary used to preprocess the queries, it holds the stop words of the index
+    TermDictionary getDictionary();
+
+    // number of documents containing at least one word of the index
+    int getDocumentCount();
+
+    // number of documents containing the term
+    int getDocumentFrequency(String term);
+
+    // idf = log_2( # of docs / documentFreq ) of the term, 0 if it is not in the index
+    double getTermIDF(String term);
+
+    // number of occurrences of the term in all the documents
+    long getCollectionFrequency(String term);
+
+    // number of indexed tokens of all the documents
+    long getTokenCount();
+
+    // a cursor over the postings of the term in increasing docId order, or null if the term
+    // is not in the index
+    PostingsCursor getPostingsCursor(String term);
+
+    // an upper bound of the normalized term frequency tf / norm of the term over all the
+    // documents, so idf * bound bounds the normalized weights of the term (dynamic pruning)
+    float getMaxNormalizedFrequency(String term);
+
+    // the norm of a document
+    float getDocumentNorm(int docId);
+
+    // the similarity the documents are scored with
+    Similarity getSimilarity();
+
+    // the factor of a document for the similarity (see Similarity.documentFactors)
+    float getDocumentFactor(int docId);
+
+    // the document ID (tweet ID) of a docId
+    String getDocumentID(int docId);
+
+    // the tweet ID of a docId as a number (0 if its document ID is not a number)
+    long getTweetId(int docId);
+
+    // the smallest and largest tweet IDs of the documents
+    long getMinTweetId();
+
+    long getMaxTweetId();
+
+    // time shards: the index is split in shards of consecutive docIds, in increasing tweet ID
+    // order when the tweets were added in time order (an InvertedIndex is a single shard)
+    int getShardCount();
+
+    // a view of one shard: the postings, term bounds and tweet IDs of its documents only (with
+    // the docIds of the whole index), the term statistics are the ones of the whole index
+    SearchableIndex getShard(int shard);
+}
@@ -0,0 +1,803 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class SegmentedIndex implements SearchableIndex {
+
+    // an index made of immutable segments, each an InvertedIndex with its own dictionary and
+    // postings (as the chunks of Prepro2). It supports bulk loads, where every chunk of the data
+    // becomes a segment (no merge of the chunks before the index is searchable), and tweets
+    // appended in real time: every append tokenizes the new documents into a small segment that
+    // is searchable as soon as append returns.
+    // The segments are searched together with the statistics of the whole index: the document
+    // frequency of a term is the sum over the segments, N is the number of documents of all the
+    // segments, and docIds are numbered over all the segments in the order the documents were
+    // added (a segment starts at its docBase).
+    // The norms of a segment are computed with the idf of its terms at the time. Every append
+    // computes again the norms of the appended segments not merged yet (copies of them sharing
+    // their postings replace them), the other segments (bulk loaded or merged) keep their norms
+    // until they are merged: the norm of one of their documents is then off by the change of the
+    // idf of its terms, its ratio to the norm with the current idf being between the smallest and
+    // the largest ratio idf_then / idf_now of its terms. The term weights always use the current idf.
+    // The merge policy (TieredMergePolicy) keeps the number of segments bounded, its merges run in
+    // the background (MergeScheduler) and compute the norms of the merged segment again with the
+    // current idf. forceMerge merges every segment: the index is then the one a full build would give.
+    // The factors of the documents for the similarity are computed with the norms, with the average
+    // length of the documents at that time.
+    // Searches use snapshots: appends and merges publish a new list of segments, so a query
+    // never sees a segment being built. Appends are serialized, a single merge runs at a time
+
+    private Set<String> stopWords;
+    private TermDictionary queryDictionary;
+    private volatile Segments segments;
+    private TieredMergePolicy mergePolicy;
+    private MergeScheduler mergeScheduler;
+    private volatile Similarity similarity;
+    // the appended segments not merged yet, whose norms are computed again on every append
+    private Set<InvertedIndex> appendedSegments = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private long appendedDocuments;
+    private long appends;
+    // postings written when the segments were created (bulk loaded or appended), the
+    // postings written by merges come on top of them (write amplification)
+    private long ingestedPostings;
+
+    // an index starting with the documents of base (whose norms must be computed)
+    public SegmentedIndex(InvertedIndex base) {
+        this(base.getDictionary().getStopWords(), new InvertedIndex[] {base}, base.getSimilarity());
+    }
+
+    // bulk load: an index made of the given segments, in docId order (e.g. the partial indexes
+    // of Prepro2.buildSegments). The norms of every segment are computed with the statistics of
+    // all the segments, so they are the ones of a single index of all the documents
+    public static SegmentedIndex bulkLoad(List<InvertedIndex> segments) {
+        return bulkLoad(segments, new TieredMergePolicy());
+    }
+
+    // bulk load, merging the segments with the given policy: the merges start once the index
+    // is built, the merge thread never sees it under construction
+    public static SegmentedIndex bulkLoad(List<InvertedIndex> segments, TieredMergePolicy mergePolicy) {
+        SegmentedIndex index = new SegmentedIndex(segments, mergePolicy);
+        index.mergeScheduler.mergeRequested(index);
+        return index;
+    }
+
+    private SegmentedIndex(List<InvertedIndex> segments, TieredMergePolicy mergePolicy) {
+        this(segments.get(0).getDictionary().getStopWords(), segments.toArray(new InvertedIndex[0]), new CosineSimilarity());
+        this.mergePolicy = mergePolicy;
+        Map<String, Integer> documentFrequencies = new HashMap<>();
+        for (InvertedIndex segment : segments) {
+            TermDictionary dictionary = segment.getDictionary();
+            for (int termId = 0; termId < dictionary.size(); termId++) {
+                documentFrequencies.merge(dictionary.getTerm(termId), segment.getDocumentFrequency(termId), Integer::sum);
+            }
+        }
+        int documentCount = this.segments.documentCount;
+        double averageLength = this.segments.getAverageLength();
+        for (InvertedIndex segment : segments) {
+            TermDictionary dictionary = segment.getDictionary();
+            double[] termIDFs = new double[dictionary.size()];
+            for (int termId = 0; termId < termIDFs.length; termId++) {
+                termIDFs[termId] = idf(documentCount, documentFrequencies.get(dictionary.getTerm(termId)));
+            }
+            segment.computeDocumentNorms(termIDFs, similarity, averageLength);
+        }
+    }
+
+    private SegmentedIndex(Set<String> stopWords, InvertedIndex[] segments, Similarity similarity) {
+        this.stopWords = stopWords;
+        this.similarity = similarity;
+        queryDictionary = new TermDictionary(stopWords);
+        int[] docBases = new int[segments.length];
+        int documentCount = 0;
+        for (int s = 0; s < segments.length; s++) {
+            docBases[s] = documentCount;
+            documentCount += segments[s].getDocumentCount();
+            ingestedPostings += segments[s].getPostingsCount();
+        }
+        this.segments = new Segments(segments, docBases, documentCount, 0, queryDictionary, similarity);
+        mergePolicy = new TieredMergePolicy();
+        mergeScheduler = new MergeScheduler();
+    }
+
+    // the policy choosing the segments to merge, the merges are checked again with it
+    public void setMergePolicy(TieredMergePolicy mergePolicy) {
+        synchronized (this) {
+            this.mergePolicy = mergePolicy;
+        }
+        mergeScheduler.mergeRequested(this);
+    }
+
+    // scores the documents with the given similarity: the factors of the documents of every
+    // segment are computed for it, as they will be for the segments appended or merged later.
+    // The index must not be searched meanwhile
+    public void setSimilarity(Similarity similarity) {
+        synchronized (this) {
+            this.similarity = similarity;
+            Segments current = segments;
+            double averageLength = current.getAverageLength();
+            for (InvertedIndex segment : current.segments) {
+                segment.setSimilarity(similarity, averageLength);
+            }
+            segments = new Segments(current.segments, current.docBases, current.documentCount,
+                    current.generation + 1, queryDictionary, similarity);
+        }
+    }
+
+    // adds the documents of the given data lines (docID, tab, tweet text) as a new segment,
+    // searchable once this returns. Each call gives a segment, so documents arriving one at a
+    // time should be appended in small batches
+    public void append(List<String> lines) {
+        synchronized (this) {
+            Prepro2 preprocessor = new Prepro2(new TermDictionary(stopWords));
+            IndexBuilder builder = new IndexBuilder(preprocessor.getDictionary());
+            for (String line : lines) {
+                preprocessor.addLine(line, builder);
+            }
+            InvertedIndex segment = builder.build();
+            if (segment.getDocumentCount() == 0) {
+                return;
+            }
+            // the norms of the new segment and of the appended segments before it, with the idf of
+            // the terms once the segment is added
+            Segments added = segments.add(segment);
+            double averageLength = added.getAverageLength();
+            InvertedIndex[] normalized = added.segments.clone();
+            for (int s = 0; s < normalized.length - 1; s++) {
+                if (appendedSegments.remove(normalized[s])) {
+                    normalized[s] = normalized[s].withDocumentNorms(added.getTermIDFs(normalized[s]), similarity, averageLength);
+                    appendedSegments.add(normalized[s]);
+                }
+            }
+            segment.computeDocumentNorms(added.getTermIDFs(segment), similarity, averageLength);
+            appendedSegments.add(segment);
+            segments = added.withSegments(normalized);
+            appends++;
+            appendedDocuments += segment.getDocumentCount();
+            ingestedPostings += segment.getPostingsCount();
+        }
+        mergeScheduler.mergeRequested(this);
+    }
+
+    // runs the next merge chosen by the merge policy (called by the merge scheduler),
+    // returns false if there is none
+    boolean mergeNext() {
+        Segments current;
+        int[] merge;
+        synchronized (this) {
+            current = segments;
+            merge = mergePolicy.findMerge(current.sizes());
+        }
+        if (merge == null) {
+            return false;
+        }
+        long start = System.nanoTime();
+        InvertedIndex merged = merge(current, merge[0], merge[1]);
+        long nanos = System.nanoTime() - start;
+        synchronized (this) {
+            // segments were appended meanwhile, or forceMerge already merged these segments
+            Segments replaced = segments.replace(current.segments[merge[0]], merge[1], merged);
+            if (replaced != null) {
+                if (merged.getSimilarity() != similarity) {
+                    // the similarity was changed during the merge
+                    merged.setSimilarity(similarity, replaced.getAverageLength());
+                }
+                segments = replaced;
+                appendedSegments.retainAll(Arrays.asList(replaced.segments));
+                mergeScheduler.addMerge(merged.getDocumentCount(), merged.getPostingsCount(), nanos);
+            }
+        }
+        return true;
+    }
+
+    // merges every segment into one, once the background merges are done. The norms are
+    // computed again, so the index is the one built from all the documents at once.
+    // Appends wait until the merge is complete
+    public void forceMerge() throws InterruptedException {
+        mergeScheduler.awaitMerges();
+        synchronized (this) {
+            Segments current = segments;
+            if (current.segments.length == 1) {
+                return;
+            }
+            long start = System.nanoTime();
+            InvertedIndex merged = merge(current, 0, current.segments.length);
+            segments = current.replace(current.segments[0], current.segments.length, merged);
+            appendedSegments.clear();
+            mergeScheduler.addMerge(merged.getDocumentCount(), merged.getPostingsCount(), System.nanoTime() - start);
+        }
+    }
+
+    // merges `count` segments starting at `from` into a new segment (in docId order), with
+    // norms computed with the idf of the terms over all the segments
+    private InvertedIndex merge(Segments current, int from, int count) {
+        InvertedIndex merged = new IndexBuilder(new TermDictionary(stopWords)).build();
+        for (int s = from; s < from + count; s++) {
+            merged.merge(current.segments[s]);
+        }
+        merged.trim();
+        merged.computeDocumentNorms(current.getTermIDFs(merged), similarity, current.getAverageLength());
+        return merged;
+    }
+
+    // stops the merge thread, waiting for the merge in progress
+    // (segments appended afterwards are searched but no longer merged)
+    public void close() throws InterruptedException {
+        mergeScheduler.close();
+    }
+
+    // idf = log_2( # of docs / documentFreq ), as InvertedIndex.getTermIDF
+    private static double idf(int documentCount, int documentFrequency) {
+        if (documentFrequency == 0) {
+            return 0;
+        }
+        return Math.log((double) documentCount / documentFrequency) / Math.log(2);
+    }
+
+    // number of segments a query visits
+    public int getSegmentCount() {
+        return segments.segments.length;
+    }
+
+    // number of documents appended since the index was created
+    public synchronized long getAppendedDocuments() {
+        return appendedDocuments;
+    }
+
+    public MergeScheduler getMergeScheduler() {
+        return mergeScheduler;
+    }
+
+    // postings written (when creating the segments and when merging them) per posting
+    // of the documents: 1 if no segment was merged
+    public double getWriteAmplification() {
+        long ingested;
+        synchronized (this) {
+            ingested = ingestedPostings;
+        }
+        return ingested == 0 ? 1 : (double) (ingested + mergeScheduler.getMergedPostings()) / ingested;
+    }
+
+    @Override
+    public SearchableIndex snapshot() {
+        return segments;
+    }
+
+    @Override
+    public long getGeneration() {
+        return segments.generation;
+    }
+
+    @Override
+    public TermDictionary getDictionary() {
+        return queryDictionary;
+    }
+
+    @Override
+    public int getDocumentCount() {
+        return segments.documentCount;
+    }
+
+    @Override
+    public int getDocumentFrequency(String term) {
+        return segments.getDocumentFrequency(term);
+    }
+
+    @Override
+    public double getTermIDF(String term) {
+        return segments.getTermIDF(term);
+    }
+
+    @Override
+    public long getCollectionFrequency(String term) {
+        return segments.getCollectionFrequency(term);
+    }
+
+    @Override
+    public long getTokenCount() {
+        return segments.getTokenCount();
+    }
+
+    @Override
+    public PostingsCursor getPostingsCursor(String term) {
+        return segments.getPostingsCursor(term);
+    }
+
+    @Override
+    public float getMaxNormalizedFrequency(String term) {
+        return segments.getMaxNormalizedFrequency(term);
+    }
+
+    @Override
+    public float getDocumentNorm(int docId) {
+        return segments.getDocumentNorm(docId);
+    }
+
+    @Override
+    public Similarity getSimilarity() {
+        return segments.similarity;
+    }
+
+    @Override
+    public float getDocumentFactor(int docId) {
+        return segments.getDocumentFactor(docId);
+    }
+
+    @Override
+    public String getDocumentID(int docId) {
+        return segments.getDocumentID(docId);
+    }
+
+    @Override
+    public long getTweetId(int docId) {
+        return segments.getTweetId(docId);
+    }
+
+    @Override
+    public long getMinTweetId() {
+        return segments.getMinTweetId();
+    }
+
+    @Override
+    public long getMaxTweetId() {
+        return segments.getMaxTweetId();
+    }
+
+    // every segment is a time shard
+    @Override
+    public int getShardCount() {
+        return segments.getShardCount();
+    }
+
+    @Override
+    public SearchableIndex getShard(int shard) {
+        return segments.getShard(shard);
+    }
+
+    @Override
+    public synchronized String toString() {
+        Segments current = segments;
+        return String.format("Segmented index: %d documents in %d segments %s, %d documents appended in %d segments, write amplification %.2f",
+                current.documentCount, current.segments.length, Arrays.toString(current.sizes()), appendedDocuments, appends, getWriteAmplification());
+    }
+
+    // an immutable list of segments, the snapshot queries are scored on
+    private static class Segments implements SearchableIndex {
+        private final InvertedIndex[] segments;
+        // docId of the first document of every segment
+        private final int[] docBases;
+        private final int documentCount;
+        private final long generation;
+        private final TermDictionary queryDictionary;
+        // the similarity the factors of the documents of the segments were computed for
+        private final Similarity similarity;
+
+        Segments(InvertedIndex[] segments, int[] docBases, int documentCount, long generation, TermDictionary queryDictionary,
+                 Similarity similarity) {
+            this.segments = segments;
+            this.docBases = docBases;
+            this.documentCount = documentCount;
+            this.generation = generation;
+            this.queryDictionary = queryDictionary;
+            this.similarity = similarity;
+        }
+
+        // the segments with a new last segment
+        Segments add(InvertedIndex segment) {
+            InvertedIndex[] added = Arrays.copyOf(segments, segments.length + 1);
+            added[segments.length] = segment;
+            int[] bases = Arrays.copyOf(docBases, docBases.length + 1);
+            bases[segments.length] = documentCount;
+            return new Segments(added, bases, documentCount + segment.getDocumentCount(), generation + 1, queryDictionary, similarity);
+        }
+
+        // the same documents in the given segments (the same segments, with other norms)
+        Segments withSegments(InvertedIndex[] normalized) {
+            return new Segments(normalized, docBases, documentCount, generation, queryDictionary, similarity);
+        }
+
+        // the number of documents of every segment
+        int[] sizes() {
+            int[] sizes = new int[segments.length];
+            for (int s = 0; s < sizes.length; s++) {
+                sizes[s] = segments[s].getDocumentCount();
+            }
+            return sizes;
+        }
+
+        // the segments with `count` segments starting at segment `first` replaced by their
+        // merge, or null if first is no longer one of the segments. A segment whose norms were
+        // computed again is still the same segment: the copy shares its doc table
+        Segments replace(InvertedIndex first, int count, InvertedIndex merged) {
+            int from = -1;
+            for (int s = 0; s < segments.length; s++) {
+                if (segments[s].getDocTable() == first.getDocTable()) {
+                    from = s;
+                }
+            }
+            if (from < 0 || from + count > segments.length) {
+                return null;
+            }
+            List<InvertedIndex> replaced = new ArrayList<>(Arrays.asList(segments));
+            replaced.subList(from, from + count).clear();
+            replaced.add(from, merged);
+            int[] bases = new int[replaced.size()];
+            for (int s = 1; s < bases.length; s++) {
+                bases[s] = bases[s - 1] + replaced.get(s - 1).getDocumentCount();
+            }
+            return new Segments(replaced.toArray(new InvertedIndex[0]), bases, documentCount, generation + 1, queryDictionary, similarity);
+        }
+
+        // the segment holding a docId: the last segment starting at or before it
+        // (an empty segment has the same docBase as the next one)
+        private int segmentOf(int docId) {
+            int low = 0;
+            int high = docBases.length - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (docBases[middle] <= docId) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return low;
+        }
+
+        @Override
+        public SearchableIndex snapshot() {
+            return this;
+        }
+
+        @Override
+        public long getGeneration() {
+            return generation;
+        }
+
+        @Override
+        public TermDictionary getDictionary() {
+            return queryDictionary;
+        }
+
+        @Override
+        public int getDocumentCount() {
+            return documentCount;
+        }
+
+        @Override
+        public int getDocumentFrequency(String term) {
+            int documentFrequency = 0;
+            for (InvertedIndex segment : segments) {
+                documentFrequency += segment.getDocumentFrequency(term);
+            }
+            return documentFrequency;
+        }
+
+        @Override
+        public double getTermIDF(String term) {
+            return idf(documentCount, getDocumentFrequency(term));
+        }
+
+        // the idf of every term of a segment, over all the segments
+        double[] getTermIDFs(InvertedIndex segment) {
+            TermDictionary dictionary = segment.getDictionary();
+            double[] termIDFs = new double[dictionary.size()];
+            for (int termId = 0; termId < termIDFs.length; termId++) {
+                termIDFs[termId] = getTermIDF(dictionary.getTerm(termId));
+            }
+            return termIDFs;
+        }
+
+        @Override
+        public long getCollectionFrequency(String term) {
+            long collectionFrequency = 0;
+            for (InvertedIndex segment : segments) {
+                collectionFrequency += segment.getCollectionFrequency(term);
+            }
+            return collectionFrequency;
+        }
+
+        @Override
+        public long getTokenCount() {
+            long tokens = 0;
+            for (InvertedIndex segment : segments) {
+                tokens += segment.getTokenCount();
+            }
+            return tokens;
+        }
+
+        // the average number of indexed tokens of the documents of all the segments
+        double getAverageLength() {
+            return documentCount == 0 ? 0 : (double) getTokenCount() / documentCount;
+        }
+
+        @Override
+        public PostingsCursor getPostingsCursor(String term) {
+            PostingsCursor[] cursors = new PostingsCursor[segments.length];
+            int[] bases = new int[segments.length];
+            int n = 0;
+            for (int s = 0; s < segments.length; s++) {
+                if (segments[s].getDocumentFrequency(term) > 0) {
+                    cursors[n] = segments[s].getPostingsCursor(term);
+                    bases[n] = docBases[s];
+                    n++;
+                }
+            }
+            if (n == 0) {
+                return null;
+            }
+            if (n == 1 && bases[0] == 0) {
+                return cursors[0];
+            }
+            return new SegmentsCursor(Arrays.copyOf(cursors, n), Arrays.copyOf(bases, n));
+        }
+
+        @Override
+        public float getMaxNormalizedFrequency(String term) {
+            float max = 0;
+            for (InvertedIndex segment : segments) {
+                max = Math.max(max, segment.getMaxNormalizedFrequency(term));
+            }
+            return max;
+        }
+
+        @Override
+        public float getDocumentNorm(int docId) {
+            int s = segmentOf(docId);
+            return segments[s].getDocumentNorm(docId - docBases[s]);
+        }
+
+        @Override
+        public Similarity getSimilarity() {
+            return similarity;
+        }
+
+        @Override
+        public float getDocumentFactor(int docId) {
+            int s = segmentOf(docId);
+            return segments[s].getDocumentFactor(docId - docBases[s]);
+        }
+
+        @Override
+        public String getDocumentID(int docId) {
+            int s = segmentOf(docId);
+            return segments[s].getDocumentID(docId - docBases[s]);
+        }
+
+        @Override
+        public long getTweetId(int docId) {
+            int s = segmentOf(docId);
+            return segments[s].getTweetId(docId - docBases[s]);
+        }
+
+        @Override
+        public long getMinTweetId() {
+            long min = Long.MAX_VALUE;
+            for (InvertedIndex segment : segments) {
+                min = Math.min(min, segment.getMinTweetId());
+            }
+            return min;
+        }
+
+        @Override
+        public long getMaxTweetId() {
+            long max = Long.MIN_VALUE;
+            for (InvertedIndex segment : segments) {
+                max = Math.max(max, segment.getMaxTweetId());
+            }
+            return max;
+        }
+
+        @Override
+        public int getShardCount() {
+            return segments.length;
+        }
+
+        @Override
+        public SearchableIndex getShard(int shard) {
+            return new Shard(this, shard);
+        }
+    }
+
+    // a segment seen as a time shard of the segments: its postings with docIds shifted by its
+    // docBase, and the term statistics of all the segments
+    private static class Shard implements SearchableIndex {
+        private final Segments segments;
+        private final InvertedIndex segment;
+        private final int docBase;
+
+        Shard(Segments segments, int shard) {
+            this.segments = segments;
+            segment = segments.segments[shard];
+            docBase = segments.docBases[shard];
+        }
+
+        @Override
+        public SearchableIndex snapshot() {
+            return this;
+        }
+
+        @Override
+        public long getGeneration() {
+            return segments.generation;
+        }
+
+        @Override
+        public TermDictionary getDictionary() {
+            return segments.queryDictionary;
+        }
+
+        // the number of documents of all the segments, the docIds of the shard are below it
+        @Override
+        public int getDocumentCount() {
+            return segments.documentCount;
+        }
+
+        @Override
+        public int getDocumentFrequency(String term) {
+            return segments.getDocumentFrequency(term);
+        }
+
+        @Override
+        public double getTermIDF(String term) {
+            return segments.getTermIDF(term);
+        }
+
+        @Override
+        public long getCollectionFrequency(String term) {
+            return segments.getCollectionFrequency(term);
+        }
+
+        @Override
+        public long getTokenCount() {
+            return segments.getTokenCount();
+        }
+
+        @Override
+        public PostingsCursor getPostingsCursor(String term) {
+            if (segment.getDocumentFrequency(term) == 0) {
+                return null;
+            }
+            PostingsCursor cursor = segment.getPostingsCursor(term);
+            return docBase == 0 ? cursor : new SegmentsCursor(new PostingsCursor[] {cursor}, new int[] {docBase});
+        }
+
+        @Override
+        public float getMaxNormalizedFrequency(String term) {
+            return segment.getMaxNormalizedFrequency(term);
+        }
+
+        @Override
+        public float getDocumentNorm(int docId) {
+            return segment.getDocumentNorm(docId - docBase);
+        }
+
+        @Override
+        public Similarity getSimilarity() {
+            return segments.similarity;
+        }
+
+        @Override
+        public float getDocumentFactor(int docId) {
+            return segment.getDocumentFactor(docId - docBase);
+        }
+
+        @Override
+        public String getDocumentID(int docId) {
+            return segment.getDocumentID(docId - docBase);
+        }
+
+        @Override
+        public long getTweetId(int docId) {
+            return segment.getTweetId(docId - docBase);
+        }
+
+        @Override
+        public long getMinTweetId() {
+            return segment.getMinTweetId();
+        }
+
+        @Override
+        public long getMaxTweetId() {
+            return segment.getMaxTweetId();
+        }
+
+        @Override
+        public int getShardCount() {
+            return 1;
+        }
+
+        @Override
+        public SearchableIndex getShard(int shard) {
+            return this;
+        }
+    }
+
+    // cursor over the postings of a term in several segments, one segment after the other:
+    // the docIds of a segment are shifted by its docBase
+    private static class SegmentsCursor implements PostingsCursor {
+        private PostingsCursor[] cursors;
+        private int[] bases;
+        private int current;
+        private int docId;
+        private int size;
+
+        SegmentsCursor(PostingsCursor[] cursors, int[] bases) {
+            this.cursors = cursors;
+            this.bases = bases;
+            docId = -1;
+            for (PostingsCursor cursor : cursors) {
+                size += cursor.size();
+            }
+        }
+
+        @Override
+        public int nextDoc() {
+            while (current < cursors.length) {
+                int doc = cursors[current].nextDoc();
+                if (doc != NO_MORE_DOCS) {
+                    return docId = bases[current] + doc;
+                }
+                current++;
+            }
+            return docId = NO_MORE_DOCS;
+        }
+
+        @Override
+        public int docId() {
+            return docId;
+        }
+
+        @Override
+        public int termFrequency() {
+            return cursors[current].termFrequency();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public int advance(int target) {
+            if (docId >= target) {
+                return docId;
+            }
+            while (current < cursors.length) {
+                // the documents of a segment are all before the next segment
+                if (current + 1 < cursors.length && bases[current + 1] <= target) {
+                    current++;
+                    continue;
+                }
+                int doc = cursors[current].advance(Math.max(0, target - bases[current]));
+                if (doc != NO_MORE_DOCS) {
+                    return docId = bases[current] + doc;
+                }
+                current++;
+            }
+            return docId = NO_MORE_DOCS;
+        }
+
+        @Override
+        public int blockLastDocId() {
+            if (docId < 0 || docId == NO_MORE_DOCS) {
+                return NO_MORE_DOCS;
+            }
+            int last = cursors[current].blockLastDocId();
+            return last == NO_MORE_DOCS ? NO_MORE_DOCS : bases[current] + last;
+        }
+
+        @Override
+        public float blockMaxNormalizedFrequency() {
+            if (docId < 0 || docId == NO_MORE_DOCS) {
+                return Float.POSITIVE_INFINITY;
+            }
+            return cursors[current].blockMaxNormalizedFrequency();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+public interface Similarity {
+
+    // a similarity scores the documents of a query: RetrieveRank adds, for every posting of a
+    // query term, scorer.score(termFrequency, index.getDocumentFactor(docId)) to the score of
+    // the document. The factor of every document is computed once by the index, when its norms
+    // are computed (see InvertedIndex.computeDocumentNorms), and the scorer of a query term once
+    // per query, so the work left per posting is about a multiply-add.
+    // A similarity is set on the index (InvertedIndex.setSimilarity, SegmentedIndex.setSimilarity)
+
+    // the name used on the command line (--similarity=NAME)
+    String getName();
+
+    // the factors of the documents of an index, from their norms (computed with the idf of the
+    // index) or their lengths (DocTable.getLength), averageLength being the average length of
+    // the documents of the whole index (a segment of a SegmentedIndex is not the whole index)
+    float[] documentFactors(float[] norms, DocTable docTable, double averageLength);
+
+    // the weight of a query term occurring queryFrequency times in the query. RetrieveRank adds
+    // a scorer with this weight for every occurrence of the term, so the weight is the weight of
+    // one occurrence: the scores of a repeated term are added as many times as it occurs
+    double queryWeight(double queryFrequency, SearchableIndex index, String term);
+
+    // true if the weights of the terms of a query are normalized to a unit vector
+    boolean normalizesQuery();
+
+    // the scorer of a query term with the given weight, on an index or a shard of it
+    TermScorer scorer(SearchableIndex index, String term, double queryWeight);
+
+    interface TermScorer {
+
+        // the contribution of a posting to the score of its document, never negative
+        double score(int termFrequency, float documentFactor);
+
+        // an upper bound of score over the postings of the term in the index (dynamic pruning)
+        double maxScore();
+
+        // an upper bound of score over the postings of the current block of a cursor of the term
+        double blockMaxScore(PostingsCursor cursor);
+    }
+
+    // the similarities that can be selected
+    static Similarity[] all() {
+        return new Similarity[] { new CosineSimilarity(), new BM25Similarity(), new DirichletSimilarity() };
+    }
+
+    // returns the similarity with the given name, or null
+    static Similarity forName(String name) {
+        for (Similarity similarity : all()) {
+            if (similarity.getName().equals(name)) {
+                return similarity;
+            }
+        }
+        return null;
+    }
+}
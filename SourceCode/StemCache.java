@@ -0,0 +1,170 @@
+public class StemCache {
+
+    // the stem cache maps surface forms (lower cased words, before stemming) to the ID of
+    // their stem in a TermDictionary, so a word seen before is not stemmed again and no String
+    // is created for it. The cache is bounded: it is a table of two-way sets, and when both
+    // entries of a set are used the least recently used one is evicted.
+    // A cache is used by one thread at a time (it has its own Stemmer)
+
+    // returned by lookup when the stem is a stop word (or the word is empty)
+    public static final int STOP_WORD = -2;
+
+    private TermDictionary dictionary;
+    private boolean addTerms;
+    private Stemmer stemmer;
+
+    private char[][] keys;
+    private int[] termIds;
+    private String[] stems;
+    private boolean[] recent; // per set: true if the second entry was used last
+    private int setMask;
+    private String lastStem;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    // time spent stemming (on the misses)
+    private long stemNanos;
+
+    // capacity is the number of surface forms kept (rounded up to a power of two),
+    // if addTerms is true, new stems are added to the dictionary (for indexing), otherwise
+    // stems that are not in the dictionary give TermDictionary.NOT_FOUND (for queries)
+    public StemCache(TermDictionary dictionary, int capacity, boolean addTerms) {
+        this.dictionary = dictionary;
+        this.addTerms = addTerms;
+        stemmer = new Stemmer();
+        int sets = 1;
+        while (sets * 2 < capacity) {
+            sets *= 2;
+        }
+        keys = new char[sets * 2][];
+        termIds = new int[sets * 2];
+        stems = new String[sets * 2];
+        recent = new boolean[sets];
+        setMask = sets - 1;
+    }
+
+    // returns the term ID of the stem of the first length characters of word,
+    // STOP_WORD if the stem is a stop word, or TermDictionary.NOT_FOUND if the
+    // stem is not in the dictionary (only when terms are not added)
+    // the stem itself is available from getLastStem()
+    public int lookup(char[] word, int length) {
+        if (length == 0) {
+            lastStem = "";
+            return STOP_WORD;
+        }
+        int set = hash(word, length) & setMask;
+        int first = set * 2;
+        for (int entry = first; entry < first + 2; entry++) {
+            if (matches(keys[entry], word, length)) {
+                hits++;
+                recent[set] = entry != first;
+                lastStem = stems[entry];
+                int termId = termIds[entry];
+                if (termId == TermDictionary.NOT_FOUND) {
+                    // the dictionary may have grown since this entry was added
+                    termId = dictionary.getId(lastStem);
+                    termIds[entry] = termId;
+                }
+                return termId;
+            }
+        }
+        misses++;
+
+        long start = System.nanoTime();
+        stemmer.stem(word, 0, length);
+        String stem = new String(stemmer.getResultBuffer(), 0, stemmer.getResultLength());
+        int termId;
+        if (stem.isEmpty() || dictionary.isStopWord(stem)) {
+            termId = STOP_WORD;
+        } else if (addTerms) {
+            termId = dictionary.addTerm(stem);
+            // keep the dictionary's copy of the term, so the cache doesn't hold duplicates
+            stem = dictionary.getTerm(termId);
+        } else {
+            termId = dictionary.getId(stem);
+        }
+        stemNanos += System.nanoTime() - start;
+
+        // replace the empty entry of the set, or else the least recently used one
+        int entry;
+        if (keys[first] == null) {
+            entry = first;
+        } else if (keys[first + 1] == null) {
+            entry = first + 1;
+        } else {
+            entry = recent[set] ? first : first + 1;
+            evictions++;
+        }
+        char[] key = new char[length];
+        System.arraycopy(word, 0, key, 0, length);
+        keys[entry] = key;
+        termIds[entry] = termId;
+        stems[entry] = stem;
+        recent[set] = entry != first;
+        lastStem = stem;
+        return termId;
+    }
+
+    // the stem of the word given to the last call of lookup
+    public String getLastStem() {
+        return lastStem;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    // time spent stemming the words that missed the cache
+    public long getStemNanos() {
+        return stemNanos;
+    }
+
+    // fraction of lookups that did not need the stemmer
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    // adds the counters of another cache to this one (used to report the caches of all ingestion threads)
+    public synchronized void addCounts(StemCache other) {
+        hits += other.hits;
+        misses += other.misses;
+        evictions += other.evictions;
+        stemNanos += other.stemNanos;
+    }
+
+    private static int hash(char[] word, int length) {
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + word[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean matches(char[] key, char[] word, int length) {
+        if (key == null || key.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key[i] != word[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("stem cache: %d hits, %d misses, %d evictions, hit rate %.1f%%",
+                hits, misses, evictions, 100 * getHitRate());
+    }
+}
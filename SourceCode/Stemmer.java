@@ -50,6 +50,31 @@ class Stemmer
       for (int c = 0; c < wLen; c++) b[i++] = w[c];
    }
 
+   /** Adds len characters of w, starting at off, to the word being stemmed.
+    * Nothing is allocated unless the internal buffer has to grow.
+    */
+
+   public void add(char[] w, int off, int len)
+   {  if (i+len >= b.length)
+      {  char[] new_b = new char[i+len+INC];
+         System.arraycopy(b, 0, new_b, 0, i);
+         b = new_b;
+      }
+      System.arraycopy(w, off, b, i, len);
+      i += len;
+   }
+
+   /** Stems the len characters of w starting at off, discarding anything
+    * added before. The result is read with getResultBuffer() and
+    * getResultLength(), so stemming a word this way allocates nothing.
+    */
+
+   public void stem(char[] w, int off, int len)
+   {  i = 0;
+      add(w, off, len);
+      stem();
+   }
+
    /**
     * After a word has been stemmed, it can be retrieved by toString(),
     * or a reference to the internal buffer can be retrieved by getResultBuffer
@@ -0,0 +1,107 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class TermDictionary {
+
+    // a term dictionary maps every vocabulary term to a dense int ID (0, 1, 2, ...)
+    // in order of first appearance, and holds the stemmed stop words in a hash set
+    // so that both lookups are constant time
+
+    // returned by getId when the term is not in the dictionary
+    public static final int NOT_FOUND = -1;
+
+    private Set<String> stopWords;
+    private HashMap<String, Integer> termIds;
+    private ArrayList<String> terms;
+
+    public TermDictionary() {
+        this(new HashSet<>());
+    }
+
+    // creates an empty dictionary using the given stop words, this lets several
+    // dictionaries (one per ingestion thread) share the stop words loaded once
+    public TermDictionary(Set<String> stopWords) {
+        this.stopWords = stopWords;
+        termIds = new HashMap<>();
+        terms = new ArrayList<>();
+    }
+
+    // reads the stop words file (one word per line) and stores the stemmed stop words,
+    // stop words are stemmed so they can be compared directly with stemmed tokens
+    public void loadStopWords(String stopWordsFile, Stemmer stemmer) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(stopWordsFile))) {
+            String stopword = reader.readLine();
+            while (stopword != null) {
+                char[] toStem = stopword.toCharArray();
+                stemmer.add(toStem, toStem.length);
+                stemmer.stem();
+                stopWords.add(stemmer.toString());
+                stopword = reader.readLine();
+            }
+        }
+    }
+
+    // adds a (stemmed) stop word, used when the dictionary is read from an index file
+    public void addStopWord(String stopWord) {
+        stopWords.add(stopWord);
+    }
+
+    public boolean isStopWord(String term) {
+        return stopWords.contains(term);
+    }
+
+    public Set<String> getStopWords() {
+        return Collections.unmodifiableSet(stopWords);
+    }
+
+    // returns the ID of the term, adding it to the dictionary if it is new
+    public int addTerm(String term) {
+        Integer id = termIds.get(term);
+        if (id != null) {
+            return id;
+        }
+        int newId = terms.size();
+        termIds.put(term, newId);
+        terms.add(term);
+        return newId;
+    }
+
+    // returns the ID of the term, or NOT_FOUND if it is not in the dictionary
+    public int getId(String term) {
+        Integer id = termIds.get(term);
+        return id == null ? NOT_FOUND : id;
+    }
+
+    public String getTerm(int id) {
+        return terms.get(id);
+    }
+
+    // number of terms in the dictionary
+    public int size() {
+        return terms.size();
+    }
+
+    // returns the terms in alphabetical order (this is the order used for step1_vocabulary)
+    public List<String> getSortedTerms() {
+        List<String> sorted = new ArrayList<>(terms);
+        Collections.sort(sorted, String.CASE_INSENSITIVE_ORDER);
+        return sorted;
+    }
+
+    // returns the term IDs ordered by their term, alphabetically
+    public int[] getSortedTermIds() {
+        List<String> sorted = getSortedTerms();
+        int[] ids = new int[sorted.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = termIds.get(sorted.get(i));
+        }
+        return ids;
+    }
+}
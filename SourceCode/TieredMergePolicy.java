@@ -0,0 +1,111 @@
+public class TieredMergePolicy {
+
+    // chooses the segments of a SegmentedIndex to merge. Segments are grouped in tiers by their
+    // number of documents: tier 0 holds the segments of up to floorSize documents, tier t the
+    // segments of up to floorSize * mergeFactor^t documents. Once mergeFactor adjacent segments
+    // are in the same tier they are merged (at most maxMergeAtOnce at a time), lowest tier first,
+    // so the merged segment usually lands in the next tier: a document is rewritten about once
+    // per tier, log_mergeFactor(N / floorSize) times (the write amplification), and there are at
+    // most about mergeFactor segments per tier.
+    // Only adjacent segments are merged, so that the documents keep their docIds.
+    // When there are more than maxSegments segments anyway (e.g. segments of very different
+    // sizes alternating), the adjacent segments with the fewest documents are merged, which
+    // bounds the number of segments a query has to visit.
+    // With a maximum segment size, the segments that reached it are never merged again and no
+    // merge goes over it: the segments then stay time shards of about that size (see
+    // RetrieveRank.setTimeCutoff)
+
+    private int mergeFactor;
+    private int maxMergeAtOnce;
+    private int floorSize;
+    private int maxSegments;
+    private int maxSegmentSize = Integer.MAX_VALUE;
+
+    public TieredMergePolicy() {
+        this(10, 1000, 30);
+    }
+
+    public TieredMergePolicy(int mergeFactor, int floorSize, int maxSegments) {
+        this.mergeFactor = Math.max(2, mergeFactor);
+        this.maxMergeAtOnce = 2 * this.mergeFactor;
+        this.floorSize = Math.max(1, floorSize);
+        this.maxSegments = Math.max(this.mergeFactor, maxSegments);
+    }
+
+    // the largest number of documents of a merged segment (default: no limit)
+    public void setMaxSegmentSize(int maxSegmentSize) {
+        this.maxSegmentSize = Math.max(1, maxSegmentSize);
+    }
+
+    public int getMaxSegmentSize() {
+        return maxSegmentSize;
+    }
+
+    // the tier of a segment of the given number of documents
+    int tier(int documents) {
+        int tier = 0;
+        for (long limit = floorSize; documents > limit; limit *= mergeFactor) {
+            tier++;
+        }
+        return tier;
+    }
+
+    // returns the next merge for segments of the given sizes (in docId order), as
+    // {first segment, number of segments}, or null if no merge is needed
+    public int[] findMerge(int[] segmentSizes) {
+        int bestTier = Integer.MAX_VALUE;
+        int[] best = null;
+        // the runs of adjacent segments of the same tier (the full segments are in no run)
+        for (int start = 0; start < segmentSizes.length; ) {
+            int tier = tier(segmentSizes[start]);
+            int end = start + 1;
+            while (end < segmentSizes.length && tier(segmentSizes[end]) == tier) {
+                end++;
+            }
+            if (end - start >= mergeFactor && tier < bestTier && segmentSizes[start] < maxSegmentSize) {
+                int count = mergeCount(segmentSizes, start, Math.min(end - start, maxMergeAtOnce));
+                if (count >= 2) {
+                    bestTier = tier;
+                    best = new int[] {start, count};
+                }
+            }
+            start = end;
+        }
+        if (best != null || segmentSizes.length <= maxSegments) {
+            return best;
+        }
+        // too many segments: merge the adjacent ones with the fewest documents
+        int count = Math.min(segmentSizes.length, Math.max(mergeFactor, segmentSizes.length - maxSegments + 1));
+        long sum = 0;
+        long bestSum = Long.MAX_VALUE;
+        for (int s = 0; s < segmentSizes.length; s++) {
+            sum += segmentSizes[s];
+            if (s >= count) {
+                sum -= segmentSizes[s - count];
+            }
+            if (s >= count - 1 && sum < bestSum && sum <= maxSegmentSize) {
+                bestSum = sum;
+                best = new int[] {s - count + 1, count};
+            }
+        }
+        return best;
+    }
+
+    // the number of segments from start (at most count) whose merge stays within the maximum size
+    private int mergeCount(int[] segmentSizes, int start, int count) {
+        long size = segmentSizes[start];
+        int n = 1;
+        while (n < count && size + segmentSizes[start + n] <= maxSegmentSize) {
+            size += segmentSizes[start + n];
+            n++;
+        }
+        return n;
+    }
+
+    @Override
+    public String toString() {
+        return "tiered merge policy: " + mergeFactor + " segments per tier, floor " + floorSize
+                + " documents, at most " + maxSegments + " segments"
+                + (maxSegmentSize == Integer.MAX_VALUE ? "" : " of at most " + maxSegmentSize + " documents");
+    }
+}
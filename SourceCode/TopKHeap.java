@@ -0,0 +1,121 @@
+public class TopKHeap {
+
+    // bounded min-heap of (docId, score) pairs keeping the k best documents offered to it:
+    // the root is the worst document kept, so a new document only enters the heap if it
+    // ranks before the root, and ranking n documents costs O(n log k).
+    // Documents rank by decreasing score, ties by increasing docId.
+    // The heap is reused across queries (clear, or reset for another k up to the k it was
+    // created with), it is not thread safe.
+
+    private int k;
+    private int[] docIds;
+    private double[] scores;
+    private int size;
+
+    public TopKHeap(int k) {
+        this.k = k;
+        docIds = new int[k];
+        scores = new double[k];
+    }
+
+    public int capacity() {
+        return k;
+    }
+
+    // the largest k the heap can be reset to
+    public int maxCapacity() {
+        return docIds.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    // empties the heap, which then keeps the k best documents offered to it
+    public void reset(int k) {
+        if (k > docIds.length) {
+            throw new IllegalArgumentException("k " + k + " is above the capacity " + docIds.length + " of the heap");
+        }
+        this.k = k;
+        size = 0;
+    }
+
+    // the score a document must beat to enter a full heap
+    public double minScore() {
+        return size < k ? Double.NEGATIVE_INFINITY : scores[0];
+    }
+
+    // offers a document to the heap, returns true if it was kept
+    public boolean offer(int docId, double score) {
+        if (size < k) {
+            // sift up the new leaf
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!worse(docId, score, docIds[parent], scores[parent])) {
+                    break;
+                }
+                docIds[i] = docIds[parent];
+                scores[i] = scores[parent];
+                i = parent;
+            }
+            docIds[i] = docId;
+            scores[i] = score;
+            return true;
+        }
+        if (k == 0 || !worse(docIds[0], scores[0], docId, score)) {
+            return false;
+        }
+        siftDown(docId, score, size);
+        return true;
+    }
+
+    // replaces the root with the given document and moves it down the first n entries
+    private void siftDown(int docId, double score, int n) {
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= n) {
+                break;
+            }
+            if (child + 1 < n && worse(docIds[child + 1], scores[child + 1], docIds[child], scores[child])) {
+                child++;
+            }
+            if (!worse(docIds[child], scores[child], docId, score)) {
+                break;
+            }
+            docIds[i] = docIds[child];
+            scores[i] = scores[child];
+            i = child;
+        }
+        docIds[i] = docId;
+        scores[i] = score;
+    }
+
+    // true if document a ranks after document b
+    private static boolean worse(int docA, double scoreA, int docB, double scoreB) {
+        if (scoreA != scoreB) {
+            return scoreA < scoreB;
+        }
+        return docA > docB;
+    }
+
+    // empties the heap into a ranked list, best document first
+    public RankedList toRankedList() {
+        int n = size;
+        int[] rankedDocIds = new int[n];
+        double[] rankedScores = new double[n];
+        // pop the worst document n times, filling the list from the end
+        for (int last = n - 1; last >= 0; last--) {
+            rankedDocIds[last] = docIds[0];
+            rankedScores[last] = scores[0];
+            siftDown(docIds[last], scores[last], last);
+        }
+        size = 0;
+        return new RankedList(rankedDocIds, rankedScores);
+    }
+}
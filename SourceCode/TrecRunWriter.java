@@ -0,0 +1,201 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.DecimalFormat;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+public class TrecRunWriter implements Closeable {
+
+    // writes a run file in the TREC format, one line per ranked document:
+    //   "TOPIC Q0 docID rank score TAG"
+    // the score with at most 3 decimals, as DecimalFormat("#.###") formats it.
+    // The file is opened once and the lines are formatted straight into a byte buffer, which is
+    // written to the file channel when full (gzip compressed if asked). It counts the lines and
+    // bytes written and the time spent writing them
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private FileChannel channel;
+    private OutputStream out;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int length;
+
+    private long lines;
+    private long bytes;
+    private long writeNanos;
+
+    // creates (or truncates) the run file, gzip compressed if gzip is set
+    public TrecRunWriter(String fileName, boolean gzip) throws IOException {
+        Path path = Paths.get(fileName);
+        channel = FileChannel.open(path, CREATE, TRUNCATE_EXISTING, WRITE);
+        out = Channels.newOutputStream(channel);
+        if (gzip) {
+            out = new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+    }
+
+    // writes the ranked documents of a query, ranks start at 1
+    public void write(String topicId, RankedList ranked, SearchableIndex index, String tag) throws IOException {
+        long start = System.nanoTime();
+        for (int i = 0; i < ranked.size(); i++) {
+            writeLine(topicId, index.getDocumentID(ranked.getDocId(i)), i + 1, ranked.getScore(i), tag);
+        }
+        writeNanos += System.nanoTime() - start;
+    }
+
+    // writes one line of the run
+    public void write(String topicId, String docId, int rank, double score, String tag) throws IOException {
+        long start = System.nanoTime();
+        writeLine(topicId, docId, rank, score, tag);
+        writeNanos += System.nanoTime() - start;
+    }
+
+    private void writeLine(String topicId, String docId, int rank, double score, String tag) throws IOException {
+        // the score takes at most 13 bytes (other scores are appended as strings), the rank 11
+        int maximum = topicId.length() + docId.length() + tag.length() + 40;
+        if (length + maximum > buffer.length) {
+            flushBuffer();
+            if (maximum > buffer.length) {
+                buffer = new byte[maximum];
+            }
+        }
+        append(topicId);
+        append(" Q0 ");
+        append(docId);
+        buffer[length++] = ' ';
+        append(Integer.toString(rank));
+        buffer[length++] = ' ';
+        int end = formatScore(score, buffer, length);
+        if (end >= 0) {
+            length = end;
+        } else {
+            append(new DecimalFormat("#.###").format(score));
+        }
+        buffer[length++] = ' ';
+        append(tag);
+        buffer[length++] = '\n';
+        lines++;
+    }
+
+    // copies the characters of s to the buffer
+    private void append(String s) {
+        if (length + s.length() + 40 > buffer.length) {
+            // a long string (a score formatted by DecimalFormat): keep room for the end of the line
+            buffer = Arrays.copyOf(buffer, Math.max(2 * buffer.length, length + 3 * s.length() + 40));
+        }
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                // not ASCII (IDs and tags normally are): encode the rest of the string
+                byte[] encoded = s.substring(i).getBytes(StandardCharsets.UTF_8);
+                System.arraycopy(encoded, 0, buffer, length, encoded.length);
+                length += encoded.length;
+                return;
+            }
+            buffer[length++] = (byte) c;
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        out.write(buffer, 0, length);
+        bytes += length;
+        length = 0;
+    }
+
+    // the score as DecimalFormat("#.###") formats it: rounded half even to 3 decimals, without
+    // trailing zeros ("0.5", "1", "0.677")
+    public static String formatScore(double score) {
+        byte[] formatted = new byte[16];
+        int end = formatScore(score, formatted, 0);
+        return end >= 0 ? new String(formatted, 0, end, StandardCharsets.US_ASCII) : new DecimalFormat("#.###").format(score);
+    }
+
+    // formats a score from 0 to 1e6 at position pos of the buffer (which has room for 13 bytes),
+    // returns the position after it, or -1 for the scores left to DecimalFormat: negative, huge
+    // or not a number, and the ones within 1e-9 of half a thousandth, whose rounding depends on
+    // the digits DecimalFormat reads from the double
+    static int formatScore(double score, byte[] buffer, int pos) {
+        double scaled = score * 1000;
+        if (!(score > 0 && scaled < 1e9 || score == 0 && 1 / score > 0)) {
+            return -1;
+        }
+        // below 1e9 the error of the product is far below 1e-6
+        double floor = Math.floor(scaled);
+        double fraction = scaled - floor;
+        if (Math.abs(fraction - 0.5) <= 1e-6) {
+            return -1;
+        }
+        long thousandths = (long) floor + (fraction > 0.5 ? 1 : 0);
+        long integer = thousandths / 1000;
+        int decimals = (int) (thousandths % 1000);
+        String digits = Long.toString(integer);
+        for (int i = 0; i < digits.length(); i++) {
+            buffer[pos++] = (byte) digits.charAt(i);
+        }
+        if (decimals != 0) {
+            buffer[pos++] = '.';
+            int divisor = 100;
+            while (decimals != 0) {
+                buffer[pos++] = (byte) ('0' + decimals / divisor);
+                decimals %= divisor;
+                divisor /= 10;
+            }
+        }
+        return pos;
+    }
+
+    // writes the buffered lines to the file
+    public void flush() throws IOException {
+        long start = System.nanoTime();
+        flushBuffer();
+        out.flush();
+        writeNanos += System.nanoTime() - start;
+    }
+
+    // writes the buffered lines and closes the file (closing it again does nothing)
+    @Override
+    public void close() throws IOException {
+        if (!channel.isOpen()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            flushBuffer();
+            out.close();
+        } finally {
+            channel.close();
+            writeNanos += System.nanoTime() - start;
+        }
+    }
+
+    public long getLines() {
+        return lines;
+    }
+
+    // number of bytes of the lines written (before compression)
+    public long getBytes() {
+        return bytes + length;
+    }
+
+    public double getWriteMillis() {
+        return writeNanos / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        double seconds = writeNanos / 1e9;
+        return String.format("Run file: %d lines (%d bytes) written in %.1f ms (%.0f lines/s, %.1f MB/s)",
+                lines, getBytes(), writeNanos / 1e6,
+                seconds == 0 ? 0 : lines / seconds, seconds == 0 ? 0 : getBytes() / seconds / 1e6);
+    }
+}
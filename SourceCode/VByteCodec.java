@@ -0,0 +1,194 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class VByteCodec implements PostingsCodec {
+
+    // variable byte codec: every posting is a pair of varints (gap from the previous docId,
+    // term frequency). A varint holds 7 bits per byte, the high bit is set on all bytes but the last.
+    // The postings are cut in blocks of BLOCK_SIZE, each with a header as in BlockCodec:
+    //   varint gap from the last docId of the previous block to the last docId of this block
+    //   varint number of bytes of the postings of the block
+    // The block header is the skip data of the postings: advance() skips the blocks ending
+    // before its target without decoding them.
+
+    public static final int ID = 1;
+    static final int BLOCK_SIZE = PostingsList.BLOCK_SIZE;
+
+    @Override
+    public int getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return "vbyte";
+    }
+
+    @Override
+    public byte[] encode(PostingsList list) {
+        // a posting takes at most 10 bytes (two varints of 5 bytes), a block header as much
+        byte[] buffer = new byte[list.size() * 10 + list.blockCount() * 10];
+        byte[] block = new byte[BLOCK_SIZE * 10];
+        int length = 0;
+        int previous = 0;
+        for (int start = 0; start < list.size(); start += BLOCK_SIZE) {
+            int n = Math.min(BLOCK_SIZE, list.size() - start);
+            int previousLast = previous;
+            int blockLength = 0;
+            for (int i = start; i < start + n; i++) {
+                blockLength = writeVarInt(block, blockLength, list.getDocId(i) - previous);
+                blockLength = writeVarInt(block, blockLength, list.getTermFrequency(i));
+                previous = list.getDocId(i);
+            }
+            length = writeVarInt(buffer, length, previous - previousLast);
+            length = writeVarInt(buffer, length, blockLength);
+            System.arraycopy(block, 0, buffer, length, blockLength);
+            length += blockLength;
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+
+    @Override
+    public PostingsCursor cursor(ByteBuffer buffer, int offset, int size, float[] blockMaxNormalizedFrequencies) {
+        return new Cursor(buffer, offset, size, blockMaxNormalizedFrequencies);
+    }
+
+    // writes a value as a varint at position in the buffer, returns the position after it
+    static int writeVarInt(byte[] buffer, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    // number of bytes of a value written as a varint
+    static int varIntLength(int value) {
+        int length = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
+    private static class Cursor implements PostingsCursor {
+
+        private ByteBuffer buffer;
+        private int position;
+        private int size;
+        private int read;
+        private int docId;
+        private int termFrequency;
+        // the block whose header was read last: the number of postings up to its end, its last
+        // docId and the position of its end
+        private int blockEnd;
+        private int lastDocId;
+        private int blockEndPosition;
+        private float[] blockMaxNormalizedFrequencies;
+
+        Cursor(ByteBuffer buffer, int offset, int size, float[] blockMaxNormalizedFrequencies) {
+            this.buffer = buffer;
+            this.position = offset;
+            this.size = size;
+            this.blockMaxNormalizedFrequencies = blockMaxNormalizedFrequencies;
+            docId = -1;
+            blockEndPosition = offset;
+        }
+
+        @Override
+        public int nextDoc() {
+            if (read == size) {
+                docId = NO_MORE_DOCS;
+                return docId;
+            }
+            int previous = docId;
+            if (read == blockEnd) {
+                // the first posting of a block, its gap is from the last docId of the previous block
+                previous = lastDocId;
+                lastDocId += readVarInt();
+                int length = readVarInt();
+                blockEndPosition = position + length;
+                blockEnd = read + Math.min(BLOCK_SIZE, size - read);
+            }
+            docId = previous + readVarInt();
+            termFrequency = readVarInt();
+            read++;
+            return docId;
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+
+        @Override
+        public int advance(int target) {
+            if (docId >= target) {
+                return docId;
+            }
+            if (target > lastDocId) {
+                // skip the rest of the current block and the blocks ending before the target,
+                // the next posting read is then the first one of a block
+                position = blockEndPosition;
+                read = blockEnd;
+                while (read < size) {
+                    int blockStart = position;
+                    int gap = readVarInt();
+                    int length = readVarInt();
+                    if (lastDocId + gap >= target) {
+                        position = blockStart;
+                        break;
+                    }
+                    lastDocId += gap;
+                    position += length;
+                    read += Math.min(BLOCK_SIZE, size - read);
+                    blockEnd = read;
+                    blockEndPosition = position;
+                }
+            }
+            // the target is in the current block, scan it
+            int doc = docId;
+            while (doc < target) {
+                doc = nextDoc();
+            }
+            return doc;
+        }
+
+        @Override
+        public int blockLastDocId() {
+            return docId >= 0 && docId != NO_MORE_DOCS ? lastDocId : NO_MORE_DOCS;
+        }
+
+        @Override
+        public float blockMaxNormalizedFrequency() {
+            if (blockMaxNormalizedFrequencies == null || docId < 0 || docId == NO_MORE_DOCS) {
+                return Float.POSITIVE_INFINITY;
+            }
+            return blockMaxNormalizedFrequencies[(read - 1) / BLOCK_SIZE];
+        }
+
+        @Override
+        public int docId() {
+            return docId;
+        }
+
+        @Override
+        public int termFrequency() {
+            return termFrequency;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class PostingsCacheTest {
+
+    private static final int POSTINGS = 100;
+
+    private static PostingsList list(int postings) {
+        PostingsList list = new PostingsList();
+        for (int d = 0; d < postings; d++) {
+            list.append(d, 1);
+        }
+        return list;
+    }
+
+    // the lookup of the scoring code: get, and put on a miss
+    private static void access(PostingsCache cache, int termId) {
+        if (cache.get(termId) == null) {
+            cache.put(termId, list(POSTINGS));
+        }
+    }
+
+    // a scan of terms queried once (as a batch of rare queries) finds the cache full of the
+    // lists of terms queried more often: it evicts none of them, its own lists are rejected
+    @Test
+    public void coldScanDoesNotFlushHotTerms() {
+        PostingsCache cache = new PostingsCache(4 * PostingsCache.size(POSTINGS));
+        for (int round = 0; round < 3; round++) {
+            for (int termId = 0; termId < 4; termId++) {
+                access(cache, termId);
+            }
+        }
+        for (int termId = 100; termId < 1100; termId++) {
+            access(cache, termId);
+        }
+        for (int termId = 0; termId < 4; termId++) {
+            assertNotNull(cache.get(termId), "hot term " + termId);
+        }
+        assertEquals(4, cache.size());
+        assertEquals(0, cache.getEvictions());
+        assertEquals(1000, cache.getRejections());
+    }
+
+    // put checks the admission itself: a list admitted before the cache filled up with hotter
+    // lists is not cached at their expense
+    @Test
+    public void putRejectsListsLessFrequentThanTheirVictims() {
+        PostingsCache cache = new PostingsCache(2 * PostingsCache.size(POSTINGS));
+        cache.get(7);
+        boolean admitted = cache.admit(7, POSTINGS);
+        for (int round = 0; round < 3; round++) {
+            access(cache, 1);
+            access(cache, 2);
+        }
+        assertTrue(admitted);
+        assertFalse(cache.put(7, list(POSTINGS)));
+        assertNotNull(cache.get(1));
+        assertNotNull(cache.get(2));
+    }
+}
@@ -0,0 +1,104 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class PostingsCodecTest {
+
+    // a list of `size` postings with gaps and term frequencies of all widths, and block-max data
+    private static PostingsList list(Random random, int size) {
+        PostingsList list = new PostingsList();
+        int docId = -1;
+        for (int i = 0; i < size; i++) {
+            docId += 1 + (random.nextInt(10) == 0 ? random.nextInt(100000) : random.nextInt(20));
+            list.append(docId, 1 + (random.nextInt(20) == 0 ? random.nextInt(1000) : random.nextInt(3)));
+        }
+        float[] blockMax = new float[list.blockCount()];
+        for (int block = 0; block < blockMax.length; block++) {
+            blockMax[block] = random.nextFloat();
+        }
+        list.setBlockMaxNormalizedFrequencies(blockMax);
+        return list;
+    }
+
+    private static float[] blockMax(PostingsList list) {
+        float[] blockMax = new float[list.blockCount()];
+        for (int block = 0; block < blockMax.length; block++) {
+            blockMax[block] = list.getBlockMaxNormalizedFrequency(block);
+        }
+        return blockMax;
+    }
+
+    // the cursor is where the cursor of the list is, with the same block metadata
+    private static void assertSamePosting(PostingsCursor expected, PostingsCursor cursor, String message) {
+        assertEquals(expected.docId(), cursor.docId(), message);
+        if (expected.docId() >= 0 && expected.docId() != PostingsCursor.NO_MORE_DOCS) {
+            assertEquals(expected.termFrequency(), cursor.termFrequency(), message);
+        }
+        assertEquals(expected.blockLastDocId(), cursor.blockLastDocId(), message);
+        assertEquals(expected.blockMaxNormalizedFrequency(), cursor.blockMaxNormalizedFrequency(), message);
+    }
+
+    // every codec decodes the postings, the skip data and the block-max data of the lists, when
+    // iterating and when moving to targets with advance (targets inside a block, in a later
+    // block and past the last posting)
+    @Test
+    public void cursorsMatchTheListCursor() {
+        Random random = new Random(45);
+        for (PostingsCodec codec : PostingsCodec.all()) {
+            for (int size : new int[] {1, 127, 128, 129, 1000, 5000}) {
+                PostingsList list = list(random, size);
+                ByteBuffer buffer = ByteBuffer.wrap(codec.encode(list));
+                String message = codec.getName() + " size " + size;
+
+                PostingsCursor expected = list.cursor();
+                PostingsCursor cursor = codec.cursor(buffer, 0, size, blockMax(list));
+                assertSamePosting(expected, cursor, message);
+                do {
+                    assertEquals(expected.nextDoc(), cursor.nextDoc(), message);
+                    assertSamePosting(expected, cursor, message);
+                } while (expected.docId() != PostingsCursor.NO_MORE_DOCS);
+
+                for (int stride : new int[] {1, 7, 200, 1000}) {
+                    expected = list.cursor();
+                    cursor = codec.cursor(buffer, 0, size, blockMax(list));
+                    for (int p = stride - 1; p < size + stride; p += stride) {
+                        int target = p < size ? list.getDocId(p) - (p % 2) : list.getDocId(size - 1) + 1;
+                        assertEquals(expected.advance(target), cursor.advance(target), message + " stride " + stride);
+                        assertSamePosting(expected, cursor, message + " stride " + stride);
+                    }
+                }
+            }
+        }
+    }
+
+    // the cursors of an index opened from an index file have the block-max data of the index
+    @Test
+    public void indexFileCursorsHaveBlockMaxData() throws IOException {
+        InvertedIndex index = RetrieveRankTest.buildIndex(RetrieveRankTest.generate(new Random(46), 3000, 3, 12));
+        for (PostingsCodec codec : PostingsCodec.all()) {
+            Path file = Files.createTempFile("index", ".idx");
+            try {
+                IndexFile.write(index, file.toString(), codec);
+                InvertedIndex opened = IndexFile.open(file.toString());
+                for (int termId = 0; termId < index.getDictionary().size(); termId++) {
+                    String message = codec.getName() + " " + index.getDictionary().getTerm(termId);
+                    PostingsCursor expected = index.getPostingsCursor(termId);
+                    PostingsCursor cursor = opened.getPostingsCursor(termId);
+                    do {
+                        assertEquals(expected.nextDoc(), cursor.nextDoc(), message);
+                        assertSamePosting(expected, cursor, message);
+                    } while (expected.docId() != PostingsCursor.NO_MORE_DOCS);
+                }
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+}
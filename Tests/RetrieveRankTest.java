@@ -0,0 +1,253 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class RetrieveRankTest {
+
+    // a small corpus with documents of the same words, so that their scores are tied,
+    // and tied documents apart in docId order
+    private static final String[] DOCUMENTS = {
+        "apple banana",
+        "cherry date",
+        "apple banana",
+        "apple cherry egg",
+        "banana date",
+        "apple banana",
+        "egg fig grape",
+        "apple apple fig",
+        "banana date",
+        "cherry grape",
+        "apple banana",
+        "fig grape",
+    };
+
+    private static final String[] QUERIES = {
+        "apple banana",
+        "banana date cherry",
+        "apple apple fig",
+        "grape egg",
+        "kiwi apple",
+    };
+
+    // the first tweet ID of the generated documents, the tweet IDs increase with the docIds
+    static final long FIRST_TWEET_ID = 1000;
+    // the generated corpus of the pruning tests, and its segments
+    private static final int GENERATED_DOCUMENTS = 4000;
+    private static final int SEGMENT_DOCUMENTS = 500;
+
+    static InvertedIndex buildIndex(String[] documents) {
+        InvertedIndex index = buildSegment(documents, 0, documents.length);
+        index.computeDocumentNorms();
+        return index;
+    }
+
+    // an index of the documents from `from` to `to` (excluded), without norms
+    private static InvertedIndex buildSegment(String[] documents, int from, int to) {
+        TermDictionary dictionary = new TermDictionary();
+        IndexBuilder builder = new IndexBuilder(dictionary);
+        for (int d = from; d < to; d++) {
+            String[] words = documents[d].split(" ");
+            int[] termIds = new int[words.length];
+            for (int i = 0; i < words.length; i++) {
+                termIds[i] = dictionary.addTerm(words[i]);
+            }
+            builder.addDocument(Long.toString(FIRST_TWEET_ID + d), termIds, termIds.length);
+        }
+        return builder.build();
+    }
+
+    // `count` texts of `minWords` to `maxWords` words drawn from a vocabulary of 300 words with a
+    // Zipf distribution, so that the postings lists have all lengths and pruning has work to do
+    static String[] generate(Random random, int count, int minWords, int maxWords) {
+        double[] cumulative = new double[300];
+        double sum = 0;
+        for (int r = 0; r < cumulative.length; r++) {
+            sum += 1.0 / (r + 1);
+            cumulative[r] = sum;
+        }
+        String[] texts = new String[count];
+        for (int t = 0; t < count; t++) {
+            StringBuilder text = new StringBuilder();
+            int words = minWords + random.nextInt(maxWords - minWords + 1);
+            for (int i = 0; i < words; i++) {
+                int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+                text.append(i == 0 ? "" : " ").append("w").append(rank < 0 ? -rank - 1 : rank);
+            }
+            texts[t] = text.toString();
+        }
+        return texts;
+    }
+
+    static List<Query> queries(String[] texts) {
+        List<Query> queries = new ArrayList<>();
+        for (int q = 0; q < texts.length; q++) {
+            queries.add(new Query("Q" + q, Arrays.asList(texts[q].split(" "))));
+        }
+        return queries;
+    }
+
+    // the scorer RetrieveRank had before the accumulator and the heap: the cosine scores are
+    // summed in a map, then all the documents are sorted by decreasing score, ties by docId
+    // (the order the heap ranks tied documents in). The query weights are computed as they
+    // were, a term repeated in the query being weighted again from its weight, and the
+    // document weights too, in double precision from norms summed in double precision
+    private static List<Map.Entry<Integer, Double>> referenceRanking(InvertedIndex index, Query query) {
+        double[] squaredNorms = new double[index.getDocumentCount()];
+        for (int termId = 0; termId < index.getDictionary().size(); termId++) {
+            double idf = index.getTermIDF(index.getDictionary().getTerm(termId));
+            PostingsCursor postings = index.getPostingsCursor(termId);
+            for (int doc = postings.nextDoc(); doc != PostingsCursor.NO_MORE_DOCS; doc = postings.nextDoc()) {
+                squaredNorms[doc] += Math.pow(idf * postings.termFrequency(), 2);
+            }
+        }
+
+        HashMap<String, Double> queryWeights = new HashMap<>();
+        for (String term : query.getQueryTerms()) {
+            queryWeights.merge(term, 1d, Double::sum);
+        }
+        for (String term : query.getQueryTerms()) {
+            queryWeights.put(term, (0.5 + 0.5 * queryWeights.get(term)) * index.getTermIDF(term));
+        }
+        double sum = 0;
+        for (double weight : queryWeights.values()) {
+            sum += weight * weight;
+        }
+        double normalizingFactor = Math.sqrt(sum);
+        queryWeights.replaceAll((term, weight) -> weight / normalizingFactor);
+
+        HashMap<Integer, Double> scores = new HashMap<>();
+        for (String term : query.getQueryTerms()) {
+            int termId = index.getDictionary().getId(term);
+            if (termId == TermDictionary.NOT_FOUND) {
+                continue;
+            }
+            double w_q = queryWeights.get(term);
+            double idf = index.getTermIDF(term);
+            PostingsCursor postings = index.getPostingsCursor(termId);
+            for (int doc = postings.nextDoc(); doc != PostingsCursor.NO_MORE_DOCS; doc = postings.nextDoc()) {
+                double w_d = idf * postings.termFrequency() / Math.sqrt(squaredNorms[doc]);
+                scores.merge(doc, w_q * w_d, Double::sum);
+            }
+        }
+        List<Map.Entry<Integer, Double>> ranking = new ArrayList<>(scores.entrySet());
+        ranking.sort((a, b) -> a.getValue().equals(b.getValue())
+                ? Integer.compare(a.getKey(), b.getKey()) : Double.compare(b.getValue(), a.getValue()));
+        return ranking;
+    }
+
+    // ranks every query with dynamic pruning and exhaustively, for every similarity and
+    // several k, and checks that both give the same documents with the same scores
+    private static void assertPruningIsExact(SearchableIndex index, List<Query> queries, boolean timeCutoff) {
+        RetrieveRank exhaustive = new RetrieveRank(index, queries);
+        exhaustive.setTimeCutoff(timeCutoff);
+        RetrieveRank pruned = new RetrieveRank(index, queries);
+        pruned.setDynamicPruning(true);
+        pruned.setTimeCutoff(timeCutoff);
+        for (Query query : queries) {
+            for (int k : new int[] {1, 10, 100}) {
+                RankedList expected = exhaustive.getTopResults(query, k);
+                RankedList ranked = pruned.getTopResults(query, k);
+                String message = index.getSimilarity().getName() + " " + query + " maxid=" + query.getMaxTweetId() + " k=" + k;
+                assertEquals(expected.size(), ranked.size(), message);
+                for (int i = 0; i < ranked.size(); i++) {
+                    assertEquals(expected.getDocId(i), ranked.getDocId(i), message + " rank " + i);
+                    assertEquals(expected.getScore(i), ranked.getScore(i), message + " rank " + i);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void prunedRankingMatchesExhaustiveRanking() {
+        Random random = new Random(42);
+        String[] documents = generate(random, GENERATED_DOCUMENTS, 3, 12);
+        List<Query> queries = queries(generate(random, 40, 1, 5));
+        InvertedIndex index = buildIndex(documents);
+        for (Similarity similarity : Similarity.all()) {
+            index.setSimilarity(similarity);
+            assertPruningIsExact(index, queries, false);
+        }
+    }
+
+    // a segmented index of time shards: the segments are full (at the largest segment size of
+    // the merge policy), so they are never merged and every one is a shard
+    @Test
+    public void prunedRankingMatchesExhaustiveRankingOnSegments() throws InterruptedException {
+        Random random = new Random(43);
+        String[] documents = generate(random, GENERATED_DOCUMENTS, 3, 12);
+        List<Query> queries = queries(generate(random, 40, 1, 5));
+        List<InvertedIndex> segments = new ArrayList<>();
+        for (int from = 0; from < documents.length; from += SEGMENT_DOCUMENTS) {
+            segments.add(buildSegment(documents, from, Math.min(from + SEGMENT_DOCUMENTS, documents.length)));
+        }
+        TieredMergePolicy mergePolicy = new TieredMergePolicy();
+        mergePolicy.setMaxSegmentSize(SEGMENT_DOCUMENTS);
+        SegmentedIndex index = SegmentedIndex.bulkLoad(segments, mergePolicy);
+        try {
+            assertEquals(GENERATED_DOCUMENTS / SEGMENT_DOCUMENTS, index.getShardCount());
+            for (Similarity similarity : Similarity.all()) {
+                index.setSimilarity(similarity);
+                assertPruningIsExact(index, queries, false);
+                // the time cutoff inside a shard, at a shard boundary and before every document
+                for (long maxTweetId : new long[] {FIRST_TWEET_ID + 2345, FIRST_TWEET_ID + 2 * SEGMENT_DOCUMENTS - 1,
+                        FIRST_TWEET_ID + GENERATED_DOCUMENTS, FIRST_TWEET_ID - 1}) {
+                    for (Query query : queries) {
+                        query.setMaxTweetId(maxTweetId);
+                    }
+                    assertPruningIsExact(index, queries, true);
+                }
+                for (Query query : queries) {
+                    query.setMaxTweetId(Long.MAX_VALUE);
+                }
+            }
+        } finally {
+            index.close();
+        }
+    }
+
+    // a term repeated in the query weighs its frequency in the query, not its square. The
+    // document "apple apple fig" (docId 7) of 3 words, the average length being 27 / 12, has
+    // K = 1.2 * (0.25 + 0.75 * 3 / 2.25) = 1.5; apple is in 6 of the 12 documents, fig in 3
+    @Test
+    public void repeatedQueryTermWeighsItsQueryFrequency() {
+        InvertedIndex index = buildIndex(DOCUMENTS);
+        index.setSimilarity(new BM25Similarity());
+        Query query = new Query("Q", Arrays.asList("apple", "apple", "fig"));
+        double apple = Math.log(1 + (12 - 6 + 0.5) / (6 + 0.5)) * 2.2 * 2 / (2 + 1.5);
+        double fig = Math.log(1 + (12 - 3 + 0.5) / (3 + 0.5)) * 2.2 * 1 / (1 + 1.5);
+        for (boolean prune : new boolean[] {false, true}) {
+            RetrieveRank rank = new RetrieveRank(index, List.of(query));
+            rank.setDynamicPruning(prune);
+            RankedList ranked = rank.getTopResults(query, 1);
+            assertEquals(7, ranked.getDocId(0), "prune=" + prune);
+            assertEquals(2 * apple + fig, ranked.getScore(0), 1e-6, "prune=" + prune);
+        }
+    }
+
+    // every k, so that the k-th document is inside, at the start and at the end of a group of ties.
+    // The scores agree within 1e-6, the index keeping the norms and the document weights in float
+    @Test
+    public void topResultsMatchTheMapBasedScorer() {
+        InvertedIndex index = buildIndex(DOCUMENTS);
+        List<Query> queries = queries(QUERIES);
+        RetrieveRank rank = new RetrieveRank(index, queries);
+        for (Query query : queries) {
+            List<Map.Entry<Integer, Double>> expected = referenceRanking(index, query);
+            for (int k = 0; k <= DOCUMENTS.length + 1; k++) {
+                RankedList ranked = rank.getTopResults(query, k);
+                assertEquals(Math.min(k, expected.size()), ranked.size(), query + " k=" + k);
+                for (int i = 0; i < ranked.size(); i++) {
+                    assertEquals(expected.get(i).getKey(), ranked.getDocId(i), query + " k=" + k + " rank " + i);
+                    assertEquals(expected.get(i).getValue(), ranked.getScore(i), 1e-6, query + " k=" + k + " rank " + i);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class SegmentedIndexTest {
+
+    // data lines (docID, tab, tweet text) of generated tweets, the tweet IDs increasing with the
+    // docIds. The digits of the words are spelled as letters, words with digits are not indexed
+    private static List<String> lines(String[] texts) {
+        List<String> lines = new ArrayList<>();
+        for (int d = 0; d < texts.length; d++) {
+            StringBuilder text = new StringBuilder(texts[d]);
+            for (int i = 0; i < text.length(); i++) {
+                if (Character.isDigit(text.charAt(i))) {
+                    text.setCharAt(i, (char) ('a' + text.charAt(i) - '0'));
+                }
+            }
+            lines.add((RetrieveRankTest.FIRST_TWEET_ID + d) + "\t" + text);
+        }
+        return lines;
+    }
+
+    // an index of the lines, as SegmentedIndex.append tokenizes them
+    private static InvertedIndex buildIndex(List<String> lines) {
+        Prepro2 preprocessor = new Prepro2();
+        IndexBuilder builder = new IndexBuilder(preprocessor.getDictionary());
+        for (String line : lines) {
+            preprocessor.addLine(line, builder);
+        }
+        InvertedIndex index = builder.build();
+        index.computeDocumentNorms();
+        return index;
+    }
+
+    // the appended segments not merged yet have the norms of a single index of all the documents,
+    // even though every append changes the idf of the terms of the segments appended before
+    @Test
+    public void appendedSegmentsHaveTheNormsOfAFullBuild() throws InterruptedException {
+        List<String> lines = lines(RetrieveRankTest.generate(new Random(44), 2000, 3, 12));
+        InvertedIndex full = buildIndex(lines);
+        SegmentedIndex index = new SegmentedIndex(buildIndex(lines.subList(0, 200)));
+        // no merges: every append stays a segment
+        index.close();
+        for (int from = 200; from < lines.size(); from += 100) {
+            index.append(lines.subList(from, from + 100));
+        }
+        assertEquals(19, index.getSegmentCount());
+        for (int d = 200; d < lines.size(); d++) {
+            float norm = full.getDocumentNorm(d);
+            assertEquals(norm, index.getDocumentNorm(d), 1e-6 * norm, "docId " + d);
+        }
+    }
+}